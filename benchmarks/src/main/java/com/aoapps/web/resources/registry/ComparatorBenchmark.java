@@ -0,0 +1,87 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Style#COMPARATOR} and {@link Script#COMPARATOR}, which
+ * determine the natural ordering before the topological sort.
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ComparatorBenchmark {
+
+  private static final int COUNT = 1024;
+
+  private Style[] styles;
+  private Script[] scripts;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    List<Style> styleList = Fixtures.styles("app", COUNT + 1);
+    styles = styleList.toArray(new Style[0]);
+    List<Script> scriptList = Fixtures.scripts("app", COUNT + 1);
+    scripts = scriptList.toArray(new Script[0]);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public int styleComparator() {
+    int sum = 0;
+    for (int i = 0; i < COUNT; i++) {
+      sum += Style.COMPARATOR.compare(styles[i], styles[i + 1]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public int scriptComparator() {
+    int sum = 0;
+    for (int i = 0; i < COUNT; i++) {
+      sum += Script.COMPARATOR.compare(scripts[i], scripts[i + 1]);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the resources used by the benchmarks.  All data is generated from a
+ * fixed seed, so each run benchmarks the same registry.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Fixtures {
+
+  /** Make no instances. */
+  private Fixtures() {
+    throw new AssertionError();
+  }
+
+  private static final long SEED = 20260101L;
+
+  /**
+   * Creates distinct styles, in no particular order.
+   */
+  static List<Style> styles(String prefix, int count) {
+    List<Style> styles = new ArrayList<>(count);
+    Random random = new Random(SEED ^ prefix.hashCode());
+    for (int i = 0; i < count; i++) {
+      styles.add(new Style("/" + prefix + "/style-" + Integer.toHexString(random.nextInt()) + '-' + i + ".css"));
+    }
+    return styles;
+  }
+
+  /**
+   * Creates distinct scripts, in no particular order, with a mix of async and defer.
+   */
+  static List<Script> scripts(String prefix, int count) {
+    List<Script> scripts = new ArrayList<>(count);
+    Random random = new Random(SEED ^ prefix.hashCode());
+    for (int i = 0; i < count; i++) {
+      int flags = random.nextInt(8);
+      scripts.add(new Script(
+          "/" + prefix + "/script-" + Integer.toHexString(random.nextInt()) + '-' + i + ".js",
+          Script.Position.DEFAULT,
+          flags == 0,
+          flags == 1,
+          null
+      ));
+    }
+    return scripts;
+  }
+
+  /**
+   * Creates acyclic ordering constraints between resources, as pairs of
+   * <code>{before, after}</code> indexes.
+   *
+   * @param  density  The number of constraints per resource
+   */
+  static int[][] edges(int count, double density) {
+    int edgeCount = count < 2 ? 0 : (int) Math.round(count * density);
+    int[][] edges = new int[edgeCount][];
+    Random random = new Random(SEED + count);
+    for (int i = 0; i < edgeCount; i++) {
+      // Constraints only go from lower to higher index, which cannot form a cycle
+      int before = random.nextInt(count - 1);
+      int after = before + 1 + random.nextInt(count - before - 1);
+      edges[i] = new int[] {before, after};
+    }
+    return edges;
+  }
+
+  /**
+   * Adds resources and their optional ordering constraints.
+   */
+  static <R extends Resource<R> & Comparable<? super R>, S extends Resources<R>> S populate(
+      S resources,
+      List<R> list,
+      int[][] edges
+  ) {
+    resources.add(list);
+    addOrdering(resources, list, edges);
+    return resources;
+  }
+
+  /**
+   * Adds optional ordering constraints.
+   */
+  static <R extends Resource<R> & Comparable<? super R>> void addOrdering(
+      Resources<R> resources,
+      List<R> list,
+      int[][] edges
+  ) {
+    for (int[] edge : edges) {
+      resources.addOrdering(false, list.get(edge[0]), list.get(edge[1]));
+    }
+  }
+
+  /**
+   * Creates new styles with ordering constraints.
+   */
+  static Styles newStyles(List<Style> list, int[][] edges) {
+    return populate(new Styles(), list, edges);
+  }
+
+  /**
+   * Creates new scripts with ordering constraints.
+   */
+  static Scripts newScripts(List<Script> list, int[][] edges) {
+    return populate(new Scripts(), list, edges);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Registry#copy()}, as performed when a request-scope
+ * registry is created from the application-scope registry.
+ *
+ * <p>The number of threads of the uncontended benchmarks is set with the JMH
+ * <code>-t</code> option.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RegistryBenchmark {
+
+  /**
+   * The total number of resources, divided evenly between the groups.
+   */
+  @Param({"10", "100", "1000", "10000"})
+  public int resourceCount;
+
+  /**
+   * The number of ordering constraints per resource.
+   */
+  @Param({"0", "0.5", "2"})
+  public double edgeDensity;
+
+  @Param({"1", "10"})
+  public int groupCount;
+
+  private Registry registry;
+
+  private Style added;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    registry = new Registry();
+    int count = Math.max(1, resourceCount / groupCount);
+    int[][] edges = Fixtures.edges(count, edgeDensity);
+    for (int i = 0; i < groupCount; i++) {
+      String name = "group-" + i;
+      Group group = registry.getGroup(name);
+      List<Style> styles = Fixtures.styles(name, count);
+      Fixtures.populate(group.styles, styles, edges);
+      Fixtures.populate(group.scripts, Fixtures.scripts(name, count), edges);
+      group.styles.getSorted();
+      group.scripts.getSorted();
+      registry.activate(name);
+    }
+    added = new Style("/request/added.css");
+  }
+
+  @Benchmark
+  public Registry copy() {
+    return registry.copy();
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Registry copyContended() {
+    return registry.copy();
+  }
+
+  /**
+   * Copies, then adds a single resource to one group of the copy.
+   */
+  @Benchmark
+  public Registry copyAndAdd() {
+    Registry copy = registry.copy();
+    copy.getGroup("group-0").styles.add(added);
+    return copy;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Resources#getSorted()} and {@link Resources#addOrdering(boolean, com.aoapps.web.resources.registry.Resource, com.aoapps.web.resources.registry.Resource)}.
+ *
+ * <p>The number of threads of the uncontended benchmarks is set with the JMH
+ * <code>-t</code> option.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResourcesBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  public int resourceCount;
+
+  /**
+   * The number of ordering constraints per resource.
+   */
+  @Param({"0", "0.5", "2"})
+  public double edgeDensity;
+
+  private List<Style> styles;
+  private int[][] edges;
+  private Styles warm;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    styles = Fixtures.styles("app", resourceCount);
+    edges = Fixtures.edges(resourceCount, edgeDensity);
+    warm = Fixtures.newStyles(styles, edges);
+    warm.getSorted();
+  }
+
+  /**
+   * New resources that have not yet been sorted.
+   */
+  @State(Scope.Thread)
+  public static class Cold {
+
+    private Styles styles;
+
+    @Setup(Level.Invocation)
+    public void setup(ResourcesBenchmark benchmark) {
+      styles = Fixtures.newStyles(benchmark.styles, benchmark.edges);
+    }
+  }
+
+  /**
+   * New resources without any ordering constraints.
+   */
+  @State(Scope.Thread)
+  public static class Unordered {
+
+    private Styles styles;
+
+    @Setup(Level.Invocation)
+    public void setup(ResourcesBenchmark benchmark) {
+      styles = new Styles();
+      styles.add(benchmark.styles);
+    }
+  }
+
+  /**
+   * A full sort.
+   */
+  @Benchmark
+  public Set<Style> getSortedCold(Cold cold) {
+    return cold.styles.getSorted();
+  }
+
+  /**
+   * The cached sort.
+   */
+  @Benchmark
+  public Set<Style> getSortedWarm() {
+    return warm.getSorted();
+  }
+
+  /**
+   * The cached sort, read by all available processors at once.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Set<Style> getSortedWarmContended() {
+    return warm.getSorted();
+  }
+
+  /**
+   * Adds all ordering constraints, one at a time.
+   */
+  @Benchmark
+  public Styles addOrderingBurst(Unordered unordered) {
+    Fixtures.addOrdering(unordered.styles, styles, edges);
+    return unordered.styles;
+  }
+
+  /**
+   * Adds all ordering constraints to sorted resources, then sorts again.
+   */
+  @Benchmark
+  public Set<Style> addOrderingBurstSorted(Unordered unordered) {
+    Styles s = unordered.styles;
+    s.getSorted();
+    Fixtures.addOrdering(s, styles, edges);
+    return s.getSorted();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Group#union(java.util.Collection)}, {@link Styles#union(java.util.Collection)},
+ * and {@link Scripts#union(java.util.Collection)} of application-, theme-, view-, and page-scope
+ * groups, as performed on each request.
+ *
+ * <p>The "unchanged" benchmarks repeat the union of the same inputs, while the
+ * "changed" benchmarks add a resource to the page-scope group before each union.</p>
+ *
+ * <p>The number of threads of the uncontended benchmarks is set with the JMH
+ * <code>-t</code> option.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UnionBenchmark {
+
+  /**
+   * The number of resources in the application-scope group.  The theme-, view-, and page-scope
+   * groups have one half, one quarter, and one eighth as many.
+   */
+  @Param({"10", "100", "1000", "10000"})
+  public int resourceCount;
+
+  /**
+   * The number of ordering constraints per resource.
+   */
+  @Param({"0", "0.5", "2"})
+  public double edgeDensity;
+
+  private static final String[] SCOPES = {"app", "theme", "view", "page"};
+
+  private List<Group> groups;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    groups = new ArrayList<>(SCOPES.length);
+    for (int i = 0; i < SCOPES.length; i++) {
+      int count = Math.max(1, resourceCount >> i);
+      int[][] edges = Fixtures.edges(count, edgeDensity);
+      Group group = new Group();
+      Fixtures.populate(group.styles, Fixtures.styles(SCOPES[i], count), edges);
+      Fixtures.populate(group.scripts, Fixtures.scripts(SCOPES[i], count), edges);
+      groups.add(group);
+    }
+  }
+
+  /**
+   * The groups, with a new resource added to a copy of the page-scope group.
+   */
+  @State(Scope.Thread)
+  public static class Changed {
+
+    private int counter;
+    private List<Group> groups;
+
+    @Setup(Level.Invocation)
+    public void setup(UnionBenchmark benchmark) {
+      List<Group> original = benchmark.groups;
+      Group page = original.get(original.size() - 1).copy();
+      int id = counter++;
+      page.styles.add(new Style("/page/changed-" + id + ".css"));
+      page.scripts.add(new Script("/page/changed-" + id + ".js"));
+      groups = new ArrayList<>(original);
+      groups.set(groups.size() - 1, page);
+    }
+  }
+
+  private static List<Styles> styles(List<Group> groups) {
+    List<Styles> styles = new ArrayList<>(groups.size());
+    for (Group group : groups) {
+      styles.add(group.styles);
+    }
+    return styles;
+  }
+
+  private static List<Scripts> scripts(List<Group> groups) {
+    List<Scripts> scripts = new ArrayList<>(groups.size());
+    for (Group group : groups) {
+      scripts.add(group.scripts);
+    }
+    return scripts;
+  }
+
+  @Benchmark
+  public Group groupUnionUnchanged() {
+    return Group.union(groups);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Group groupUnionUnchangedContended() {
+    return Group.union(groups);
+  }
+
+  @Benchmark
+  public Group groupUnionChanged(Changed changed) {
+    return Group.union(changed.groups);
+  }
+
+  /**
+   * The union followed by the sort of its styles and scripts, as needed to render a page.
+   */
+  @Benchmark
+  public List<Set<?>> groupUnionSortedChanged(Changed changed) {
+    Group union = Group.union(changed.groups);
+    return Arrays.asList(union.styles.getSorted(), union.scripts.getSorted());
+  }
+
+  @Benchmark
+  public Styles stylesUnionUnchanged() {
+    return Styles.union(styles(groups));
+  }
+
+  @Benchmark
+  public Styles stylesUnionChanged(Changed changed) {
+    return Styles.union(styles(changed.groups));
+  }
+
+  @Benchmark
+  public Scripts scriptsUnionUnchanged() {
+    return Scripts.union(scripts(groups));
+  }
+
+  @Benchmark
+  public Scripts scriptsUnionChanged(Changed changed) {
+    return Scripts.union(scripts(changed.groups));
+  }
+}
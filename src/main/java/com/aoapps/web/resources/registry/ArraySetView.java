@@ -0,0 +1,107 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An unmodifiable set that iterates an array in order, while membership is
+ * checked against another set with the same elements.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ArraySetView<E> extends AbstractSet<E> {
+
+  private final Object[] elements;
+  private final Set<?> membership;
+
+  /**
+   * @param  elements    The elements, in iteration order.  This array is not copied and must not be modified.
+   * @param  membership  A set containing exactly the same elements.  This set must not be modified.
+   */
+  ArraySetView(Object[] elements, Set<?> membership) {
+    assert elements.length == membership.size();
+    this.elements = elements;
+    this.membership = membership;
+  }
+
+  @Override
+  public int size() {
+    return elements.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return elements.length == 0;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return membership.contains(o);
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return index < elements.length;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (index >= elements.length) {
+          throw new NoSuchElementException();
+        }
+        return (E) elements[index++];
+      }
+    };
+  }
+
+  @Override
+  public Object[] toArray() {
+    return elements.clone();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T[] toArray(T[] a) {
+    int size = elements.length;
+    if (a.length < size) {
+      return (T[]) Arrays.copyOf(elements, size, a.getClass());
+    }
+    System.arraycopy(elements, 0, a, 0, size);
+    if (a.length > size) {
+      a[size] = null;
+    }
+    return a;
+  }
+}
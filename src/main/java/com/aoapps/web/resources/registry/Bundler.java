@@ -0,0 +1,518 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import com.aoapps.lang.NullArgumentException;
+import com.aoapps.tempfiles.TempFile;
+import com.aoapps.tempfiles.TempFileContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Concatenates sorted local styles and scripts into bundles, each served from a single URI.
+ *
+ * <p>Each run of consecutive local resources that may share a tag is concatenated, in sorted order, into a
+ * temporary file.  Styles share a tag when they have the same media, direction, and crossorigin, and are not
+ * disabled.  Scripts share a tag when they have the same position, async, defer, and crossorigin.  Since only
+ * consecutive resources are combined, the sorted order is never changed.  Resources that are not local, or
+ * are alone in their run, are left as-is.  When a run cannot be bundled, such as when one of its files is
+ * missing, its resources are left as-is.</p>
+ *
+ * <p>A resource is local when its URI is a full path that the resolver maps to a file.  The resolver
+ * should return {@code null} for any style with relative <code>url(…)</code> references, since the bundle
+ * is served from a different path.</p>
+ *
+ * <p>A bundle is rebuilt only when its resources change, or when the size or modification time of any of its
+ * files changes.  Files are checked at most once per check interval.  The bundle URI contains a hash of its
+ * content, so it may be cached indefinitely.  The application serves bundles by their URI with
+ * {@link #getFile(java.lang.String)}.</p>
+ *
+ * <p>At most {@link #MAX_BUNDLES} bundles are retained, discarding the least recently used.  The temporary
+ * files are managed by a {@link TempFileContext}, and are deleted when their bundle is rebuilt or discarded,
+ * or on {@link #close()}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class Bundler implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(Bundler.class.getName());
+
+  /**
+   * The maximum number of bundles retained.
+   */
+  public static final int MAX_BUNDLES = 256;
+
+  /**
+   * The default interval between checks of the files of a bundle, in milliseconds.
+   */
+  public static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+  /**
+   * The separator between scripts, which terminates any final statement without a semicolon.
+   */
+  private static final byte[] SCRIPT_SEPARATOR = "\n;\n".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * The separator between styles.
+   */
+  private static final byte[] STYLE_SEPARATOR = "\n".getBytes(StandardCharsets.US_ASCII);
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * A temporary file, shared by all bundles with the same content.
+   */
+  private static final class BundleFile {
+
+    private final TempFile tempFile;
+    private final Path path;
+
+    /**
+     * The number of bundles using this file, guarded by the lock on the bundler.
+     */
+    private int references;
+
+    private BundleFile(TempFile tempFile) {
+      this.tempFile = tempFile;
+      this.path = tempFile.getFile().toPath();
+    }
+  }
+
+  /**
+   * A bundle along with the state of the files it was built from.
+   */
+  private static final class Bundle {
+
+    private final Path[] files;
+    private final long[] sizes;
+    private final long[] lastModifieds;
+    private final String uri;
+
+    /**
+     * The time the files were last checked, in nanoseconds.
+     */
+    private volatile long checked;
+
+    /**
+     * The time this bundle was last used, in nanoseconds.
+     */
+    private volatile long used;
+
+    private Bundle(Path[] files, long[] sizes, long[] lastModifieds, String uri, long now) {
+      this.files = files;
+      this.sizes = sizes;
+      this.lastModifieds = lastModifieds;
+      this.uri = uri;
+      this.checked = now;
+      this.used = now;
+    }
+
+    /**
+     * Checks if none of the files have changed since the bundle was built.  The files are
+     * only checked once per interval.  A file that can no longer be read is a change.
+     */
+    private boolean isCurrent(long now, long checkIntervalNanos) {
+      if (now - checked < checkIntervalNanos) {
+        return true;
+      }
+      try {
+        for (int i = 0; i < files.length; i++) {
+          Path f = files[i];
+          if (Files.size(f) != sizes[i] || Files.getLastModifiedTime(f).toMillis() != lastModifieds[i]) {
+            return false;
+          }
+        }
+      } catch (IOException e) {
+        return false;
+      }
+      checked = now;
+      return true;
+    }
+  }
+
+  private final String prefix;
+  private final Function<? super String, ? extends Path> resolver;
+  private final long checkIntervalNanos;
+  private final TempFileContext tempFileContext = new TempFileContext();
+
+  /**
+   * The current bundle for each run of resources.
+   */
+  private final Map<List<? extends Resource<?>>, Bundle> bundles = new ConcurrentHashMap<>();
+
+  /**
+   * The files by bundle URI, shared by bundles with the same content.
+   */
+  private final Map<String, BundleFile> files = new ConcurrentHashMap<>();
+
+  private volatile boolean closed;
+
+  /**
+   * Creates a new bundler.
+   *
+   * @param  prefix         The full path that prefixes the URI of each bundle, such as <code>"/bundles/"</code>
+   * @param  resolver       Gets the file for a local URI, or {@code null} when the resource should not be bundled
+   * @param  checkInterval  The minimum interval between checks of the files of a bundle, in milliseconds
+   */
+  public Bundler(String prefix, Function<? super String, ? extends Path> resolver, long checkInterval) {
+    if (prefix == null) {
+      throw new NullArgumentException("prefix");
+    }
+    if (!prefix.startsWith("/")) {
+      throw new IllegalArgumentException("prefix must be a full path beginning with a slash: " + prefix);
+    }
+    if (resolver == null) {
+      throw new NullArgumentException("resolver");
+    }
+    if (checkInterval < 0) {
+      throw new IllegalArgumentException("checkInterval < 0: " + checkInterval);
+    }
+    this.prefix = prefix.endsWith("/") ? prefix : (prefix + '/');
+    this.resolver = resolver;
+    this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkInterval);
+  }
+
+  /**
+   * Creates a new bundler, checking files at most once per {@linkplain #DEFAULT_CHECK_INTERVAL default interval}.
+   *
+   * @param  prefix    The full path that prefixes the URI of each bundle, such as <code>"/bundles/"</code>
+   * @param  resolver  Gets the file for a local URI, or {@code null} when the resource should not be bundled
+   */
+  public Bundler(String prefix, Function<? super String, ? extends Path> resolver) {
+    this(prefix, resolver, DEFAULT_CHECK_INTERVAL);
+  }
+
+  /**
+   * Gets the file for a local resource.
+   *
+   * @return  The file or {@code null} when not local
+   */
+  private Path resolve(Resource<?> resource) {
+    String uri = resource.getUri();
+    if (uri == null || !HtmlRenderer.isFullPath(uri)) {
+      return null;
+    }
+    return resolver.apply(uri);
+  }
+
+  static String toHex(byte[] bytes, int len) {
+    char[] chars = new char[len * 2];
+    for (int i = 0; i < len; i++) {
+      int b = bytes[i] & 0xff;
+      chars[i * 2] = HEX[b >>> 4];
+      chars[i * 2 + 1] = HEX[b & 0xf];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Releases a bundle's use of its file, deleting the file when no longer used.
+   * Must hold the lock on this bundler.
+   */
+  private void release(Bundle bundle) throws IOException {
+    assert Thread.holdsLock(this);
+    BundleFile file = files.get(bundle.uri);
+    if (file != null && --file.references == 0) {
+      files.remove(bundle.uri);
+      file.tempFile.close();
+    }
+  }
+
+  /**
+   * Discards the least recently used bundles while more than {@link #MAX_BUNDLES}.
+   * Must hold the lock on this bundler.
+   */
+  private void prune() throws IOException {
+    assert Thread.holdsLock(this);
+    while (bundles.size() > MAX_BUNDLES) {
+      Map.Entry<List<? extends Resource<?>>, Bundle> eldest = null;
+      for (Map.Entry<List<? extends Resource<?>>, Bundle> entry : bundles.entrySet()) {
+        if (eldest == null || entry.getValue().used - eldest.getValue().used < 0) {
+          eldest = entry;
+        }
+      }
+      bundles.remove(eldest.getKey());
+      release(eldest.getValue());
+    }
+  }
+
+  /**
+   * Concatenates files into a new bundle, named by the hash of its content.
+   * Must hold the lock on this bundler.
+   */
+  private Bundle build(List<Path> runFiles, String suffix, byte[] separator, long now) throws IOException {
+    assert Thread.holdsLock(this);
+    int size = runFiles.size();
+    Path[] inputs = runFiles.toArray(new Path[size]);
+    // The state is taken before reading, so any change while reading causes another rebuild
+    long[] sizes = new long[size];
+    long[] lastModifieds = new long[size];
+    for (int i = 0; i < size; i++) {
+      sizes[i] = Files.size(inputs[i]);
+      lastModifieds[i] = Files.getLastModifiedTime(inputs[i]).toMillis();
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError("SHA-256 is required on all Java platforms", e);
+    }
+    TempFile tempFile = tempFileContext.createTempFile("bundle-", suffix);
+    try {
+      byte[] buff = new byte[8192];
+      try (OutputStream out = Files.newOutputStream(tempFile.getFile().toPath())) {
+        for (int i = 0; i < size; i++) {
+          if (i > 0) {
+            out.write(separator);
+            digest.update(separator);
+          }
+          try (InputStream in = Files.newInputStream(inputs[i])) {
+            int count;
+            while ((count = in.read(buff)) != -1) {
+              out.write(buff, 0, count);
+              digest.update(buff, 0, count);
+            }
+          }
+        }
+      }
+      String uri = prefix + toHex(digest.digest(), 8) + suffix;
+      BundleFile file = files.get(uri);
+      if (file != null) {
+        // Same content as an existing bundle
+        tempFile.close();
+      } else {
+        file = new BundleFile(tempFile);
+        files.put(uri, file);
+      }
+      file.references++;
+      if (logger.isLoggable(Level.FINE)) {
+        logger.fine("Bundled " + size + " files into " + uri);
+      }
+      return new Bundle(inputs, sizes, lastModifieds, uri, now);
+    } catch (IOException | RuntimeException | Error e) {
+      tempFile.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the current bundle for a run of resources, building when first needed or when any
+   * of its files have changed.
+   */
+  private Bundle getBundle(List<? extends Resource<?>> run, List<Path> runFiles, String suffix, byte[] separator) throws IOException {
+    long now = System.nanoTime();
+    Bundle bundle = bundles.get(run);
+    if (bundle == null || !bundle.isCurrent(now, checkIntervalNanos)) {
+      synchronized (this) {
+        if (closed) {
+          throw new IllegalStateException("Bundler closed");
+        }
+        bundle = bundles.get(run);
+        if (bundle == null || !bundle.isCurrent(now, checkIntervalNanos)) {
+          Bundle newBundle;
+          try {
+            newBundle = build(runFiles, suffix, separator, now);
+          } finally {
+            // The previous bundle is out of date, even when it cannot be rebuilt
+            if (bundle != null) {
+              bundles.remove(run);
+              release(bundle);
+            }
+          }
+          bundle = newBundle;
+          bundles.put(run, bundle);
+          prune();
+        }
+      }
+    }
+    bundle.used = now;
+    return bundle;
+  }
+
+  /**
+   * Adds a run of resources, replacing a run of more than one resource with its bundle.
+   * When the bundle cannot be built, the resources are added as-is.
+   */
+  private <R extends Resource<R> & Comparable<? super R>> void addRun(
+      List<R> bundled,
+      List<R> run,
+      List<Path> runFiles,
+      BiFunction<? super R, ? super String, ? extends R> withUri,
+      String suffix,
+      byte[] separator
+  ) {
+    if (run.size() == 1) {
+      bundled.add(run.get(0));
+    } else if (!run.isEmpty()) {
+      Bundle bundle;
+      try {
+        bundle = getBundle(run, runFiles, suffix, separator);
+      } catch (IOException e) {
+        if (logger.isLoggable(Level.FINE)) {
+          logger.log(Level.FINE, "Unable to bundle " + run, e);
+        }
+        bundled.addAll(run);
+        return;
+      }
+      bundled.add(withUri.apply(run.get(0), bundle.uri));
+    }
+  }
+
+  /**
+   * Splits sorted resources into runs of consecutive local resources that may share a tag,
+   * replacing each run of more than one resource with its bundle.
+   *
+   * @param  compatible  Checks if two resources may share a tag.  A resource that is not
+   *                     compatible with itself is never bundled.
+   * @param  withUri     Creates a resource like the given resource, but with the given URI
+   */
+  private <R extends Resource<R> & Comparable<? super R>> List<R> bundle(
+      Iterable<? extends R> resources,
+      BiPredicate<? super R, ? super R> compatible,
+      BiFunction<? super R, ? super String, ? extends R> withUri,
+      String suffix,
+      byte[] separator
+  ) {
+    if (closed) {
+      throw new IllegalStateException("Bundler closed");
+    }
+    List<R> bundled = new ArrayList<>();
+    List<R> run = new ArrayList<>();
+    List<Path> runFiles = new ArrayList<>();
+    for (R resource : resources) {
+      Path file = compatible.test(resource, resource) ? resolve(resource) : null;
+      if (file == null || (!run.isEmpty() && !compatible.test(run.get(0), resource))) {
+        addRun(bundled, run, runFiles, withUri, suffix, separator);
+        run = new ArrayList<>();
+        runFiles = new ArrayList<>();
+      }
+      if (file == null) {
+        bundled.add(resource);
+      } else {
+        run.add(resource);
+        runFiles.add(file);
+      }
+    }
+    addRun(bundled, run, runFiles, withUri, suffix, separator);
+    return Collections.unmodifiableList(bundled);
+  }
+
+  /**
+   * Bundles sorted styles.
+   *
+   * @param  styles  The styles, in sorted order, such as from
+   *                 {@link RenderPlan#getStyles(com.aoapps.web.resources.registry.Style.Direction)}
+   *
+   * @return  An unmodifiable list of the styles, with each bundle in place of the styles it contains.
+   *
+   * @throws  IllegalStateException  when this bundler is closed
+   */
+  public List<Style> bundleStyles(Iterable<? extends Style> styles) throws IllegalStateException {
+    if (styles == null) {
+      throw new NullArgumentException("styles");
+    }
+    return bundle(
+        styles,
+        (s1, s2) -> !s1.isDisabled() && !s2.isDisabled()
+            && Objects.equals(s1.getMedia(), s2.getMedia())
+            && s1.getDirection() == s2.getDirection()
+            && Objects.equals(s1.getCrossorigin(), s2.getCrossorigin()),
+        (style, uri) -> Style.of(uri, style.getMedia(), style.getDirection(), style.getCrossorigin(), false),
+        ".css",
+        STYLE_SEPARATOR
+    );
+  }
+
+  /**
+   * Bundles sorted scripts.
+   *
+   * @param  scripts  The scripts, in sorted order, such as from
+   *                  {@link RenderPlan#getScripts(com.aoapps.web.resources.registry.Script.Position)}
+   *
+   * @return  An unmodifiable list of the scripts, with each bundle in place of the scripts it contains.
+   *
+   * @throws  IllegalStateException  when this bundler is closed
+   */
+  public List<Script> bundleScripts(Iterable<? extends Script> scripts) throws IllegalStateException {
+    if (scripts == null) {
+      throw new NullArgumentException("scripts");
+    }
+    return bundle(
+        scripts,
+        (s1, s2) -> s1.getPosition() == s2.getPosition()
+            && s1.isAsync() == s2.isAsync()
+            && s1.isDefer() == s2.isDefer()
+            && Objects.equals(s1.getCrossorigin(), s2.getCrossorigin()),
+        (script, uri) -> Script.of(uri, script.getPosition(), script.isAsync(), script.isDefer(), script.getCrossorigin()),
+        ".js",
+        SCRIPT_SEPARATOR
+    );
+  }
+
+  /**
+   * Gets the file for a bundle URI.
+   *
+   * @param  uri  The URI of the bundle, without any context path
+   *
+   * @return  The file or {@code null} when not a current bundle of this bundler
+   */
+  public Path getFile(String uri) {
+    BundleFile file = files.get(uri);
+    return file == null ? null : file.path;
+  }
+
+  /**
+   * Deletes the temporary files of all bundles.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (!closed) {
+        closed = true;
+        bundles.clear();
+        files.clear();
+        tempFileContext.close();
+      }
+    }
+  }
+}
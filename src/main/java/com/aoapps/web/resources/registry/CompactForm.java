@@ -0,0 +1,436 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compact serialized form of {@link Registry}, {@link Group}, {@link Styles}, and {@link Scripts}.
+ *
+ * <p>Each distinct string, style, and script is written once, in tables at the start of the
+ * stream, and is then referenced by index.  The attributes of styles and scripts are packed into
+ * bit flags, ordering constraints are written as pairs of indexes, and sorts are not written.
+ * Resources of other types are written with default serialization.</p>
+ *
+ * <p>A copy of a {@linkplain Registry#registerBaseline(java.lang.String) baseline registry}
+ * is written as only its changes from the baseline.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class CompactForm implements Externalizable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The version of the format, written first.
+   */
+  private static final byte FORMAT = 1;
+
+  static final byte REGISTRY = 1;
+  static final byte GROUP = 2;
+  static final byte STYLES = 3;
+  static final byte SCRIPTS = 4;
+  static final byte REGISTRY_DELTA = 5;
+
+  private static final int STYLE_DIRECTION_MASK = 0x03;
+  private static final int STYLE_DISABLED = 0x04;
+  private static final int STYLE_MEDIA = 0x08;
+  private static final int STYLE_CROSSORIGIN = 0x10;
+
+  private static final int SCRIPT_POSITION_MASK = 0x07;
+  private static final int SCRIPT_ASYNC = 0x08;
+  private static final int SCRIPT_DEFER = 0x10;
+  private static final int SCRIPT_CROSSORIGIN = 0x20;
+
+  private static final Style.Direction[] directions = Style.Direction.values();
+  private static final Script.Position[] positions = Script.Position.values();
+
+  /**
+   * Gets a resource by its index in the table of its type.
+   */
+  @FunctionalInterface
+  interface Resolver<R> {
+    R get(int index) throws InvalidObjectException;
+  }
+
+  /**
+   * Writes the body of the form, building the tables as it goes.
+   */
+  static final class Output {
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final Map<Style, Integer> styles = new LinkedHashMap<>();
+    private final Map<Script, Integer> scripts = new LinkedHashMap<>();
+    private final List<Object> objects = new ArrayList<>();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream body = new DataOutputStream(bytes);
+
+    private Output() {
+      // Only created by writeExternal
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+      while ((value & ~0x7f) != 0) {
+        out.writeByte((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      out.writeByte(value);
+    }
+
+    void writeVarInt(int value) throws IOException {
+      writeVarInt(body, value);
+    }
+
+    /**
+     * Gets the reference to a string, which is its index in the table plus one, or zero for {@code null}.
+     */
+    private int indexOf(String value) {
+      return value == null ? 0 : strings.computeIfAbsent(value, k -> strings.size() + 1);
+    }
+
+    void writeString(String value) throws IOException {
+      writeVarInt(indexOf(value));
+    }
+
+    void writeLong(long value) throws IOException {
+      body.writeLong(value);
+    }
+
+    int indexOf(Style style) {
+      return styles.computeIfAbsent(style, k -> styles.size());
+    }
+
+    int indexOf(Script script) {
+      return scripts.computeIfAbsent(script, k -> scripts.size());
+    }
+
+    /**
+     * Writes an object with default serialization, after the body.
+     */
+    void writeObject(Object object) throws IOException {
+      if (object == null) {
+        writeVarInt(0);
+      } else {
+        objects.add(object);
+        writeVarInt(objects.size());
+      }
+    }
+
+    private void writeTo(ObjectOutput out) throws IOException {
+      // The tables of styles and scripts add to the table of strings, so are encoded first
+      ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+      DataOutputStream tables = new DataOutputStream(tableBytes);
+      writeVarInt(tables, styles.size());
+      for (Style style : styles.keySet()) {
+        String media = style.getMedia();
+        Style.Direction direction = style.getDirection();
+        String crossorigin = style.getCrossorigin();
+        int flags = direction == null ? 0 : (direction.ordinal() + 1);
+        if (style.isDisabled()) {
+          flags |= STYLE_DISABLED;
+        }
+        if (media != null) {
+          flags |= STYLE_MEDIA;
+        }
+        if (crossorigin != null) {
+          flags |= STYLE_CROSSORIGIN;
+        }
+        writeVarInt(tables, indexOf(style.getUri()));
+        tables.writeByte(flags);
+        if (media != null) {
+          writeVarInt(tables, indexOf(media));
+        }
+        if (crossorigin != null) {
+          writeVarInt(tables, indexOf(crossorigin));
+        }
+      }
+      writeVarInt(tables, scripts.size());
+      for (Script script : scripts.keySet()) {
+        String crossorigin = script.getCrossorigin();
+        int flags = script.getPosition().ordinal();
+        if (script.isAsync()) {
+          flags |= SCRIPT_ASYNC;
+        }
+        if (script.isDefer()) {
+          flags |= SCRIPT_DEFER;
+        }
+        if (crossorigin != null) {
+          flags |= SCRIPT_CROSSORIGIN;
+        }
+        writeVarInt(tables, indexOf(script.getUri()));
+        tables.writeByte(flags);
+        if (crossorigin != null) {
+          writeVarInt(tables, indexOf(crossorigin));
+        }
+      }
+      tables.flush();
+      body.flush();
+      // Strings
+      ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+      DataOutputStream stringsOut = new DataOutputStream(stringBytes);
+      writeVarInt(stringsOut, strings.size());
+      for (String value : strings.keySet()) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(stringsOut, utf8.length);
+        stringsOut.write(utf8);
+      }
+      stringsOut.flush();
+      out.writeInt(stringBytes.size());
+      out.write(stringBytes.toByteArray());
+      out.writeInt(tableBytes.size());
+      out.write(tableBytes.toByteArray());
+      out.writeInt(bytes.size());
+      out.write(bytes.toByteArray());
+      out.writeInt(objects.size());
+      for (Object object : objects) {
+        out.writeObject(object);
+      }
+    }
+  }
+
+  /**
+   * Reads the body of the form, with the tables already read.
+   */
+  static final class Input {
+
+    private final String[] strings;
+    private final Style[] styles;
+    private final Script[] scripts;
+    private final Object[] objects;
+    private final DataInputStream body;
+
+    private Input(String[] strings, Style[] styles, Script[] scripts, Object[] objects, byte[] body) {
+      this.strings = strings;
+      this.styles = styles;
+      this.scripts = scripts;
+      this.objects = objects;
+      this.body = new DataInputStream(new ByteArrayInputStream(body));
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = in.readUnsignedByte();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new InvalidObjectException("Malformed variable-length integer");
+    }
+
+    int readVarInt() throws IOException {
+      return readVarInt(body);
+    }
+
+    private static <T> T get(T[] table, int index) throws InvalidObjectException {
+      if (index < 0 || index >= table.length) {
+        throw new InvalidObjectException("Index out of range: " + index);
+      }
+      return table[index];
+    }
+
+    /**
+     * Gets a string by its reference, which is its index in the table plus one, or zero for {@code null}.
+     */
+    private static String getString(String[] strings, int index) throws InvalidObjectException {
+      return index == 0 ? null : get(strings, index - 1);
+    }
+
+    String readString() throws IOException {
+      return getString(strings, readVarInt());
+    }
+
+    long readLong() throws IOException {
+      return body.readLong();
+    }
+
+    Style getStyle(int index) throws InvalidObjectException {
+      return get(styles, index);
+    }
+
+    Script getScript(int index) throws InvalidObjectException {
+      return get(scripts, index);
+    }
+
+    /**
+     * Reads an object written with default serialization.
+     */
+    Object readObject() throws IOException {
+      int index = readVarInt();
+      return index == 0 ? null : get(objects, index - 1);
+    }
+
+    private static byte[] readBytes(ObjectInput in) throws IOException {
+      int length = in.readInt();
+      if (length < 0) {
+        throw new InvalidObjectException("Negative length: " + length);
+      }
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      return bytes;
+    }
+
+    private static Input readFrom(ObjectInput in) throws IOException, ClassNotFoundException {
+      // Strings
+      DataInputStream stringsIn = new DataInputStream(new ByteArrayInputStream(readBytes(in)));
+      String[] strings = new String[readVarInt(stringsIn)];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] utf8 = new byte[readVarInt(stringsIn)];
+        stringsIn.readFully(utf8);
+        strings[i] = new String(utf8, StandardCharsets.UTF_8);
+      }
+      // Styles and scripts
+      DataInputStream tables = new DataInputStream(new ByteArrayInputStream(readBytes(in)));
+      Style[] styles = new Style[readVarInt(tables)];
+      for (int i = 0; i < styles.length; i++) {
+        String uri = getString(strings, readVarInt(tables));
+        int flags = tables.readUnsignedByte();
+        int direction = flags & STYLE_DIRECTION_MASK;
+        styles[i] = Style.of(
+            uri,
+            (flags & STYLE_MEDIA) == 0 ? null : getString(strings, readVarInt(tables)),
+            direction == 0 ? null : get(directions, direction - 1),
+            (flags & STYLE_CROSSORIGIN) == 0 ? null : getString(strings, readVarInt(tables)),
+            (flags & STYLE_DISABLED) != 0
+        );
+      }
+      Script[] scripts = new Script[readVarInt(tables)];
+      for (int i = 0; i < scripts.length; i++) {
+        String uri = getString(strings, readVarInt(tables));
+        int flags = tables.readUnsignedByte();
+        scripts[i] = Script.of(
+            uri,
+            get(positions, flags & SCRIPT_POSITION_MASK),
+            (flags & SCRIPT_ASYNC) != 0,
+            (flags & SCRIPT_DEFER) != 0,
+            (flags & SCRIPT_CROSSORIGIN) == 0 ? null : getString(strings, readVarInt(tables))
+        );
+      }
+      byte[] body = readBytes(in);
+      int objectCount = in.readInt();
+      if (objectCount < 0) {
+        throw new InvalidObjectException("Negative count: " + objectCount);
+      }
+      Object[] objects = new Object[objectCount];
+      for (int i = 0; i < objectCount; i++) {
+        objects[i] = in.readObject();
+      }
+      return new Input(strings, styles, scripts, objects, body);
+    }
+  }
+
+  private byte type;
+  private Object object;
+
+  /**
+   * Required by {@link Externalizable}.
+   */
+  public CompactForm() {
+    // Read by readExternal
+  }
+
+  CompactForm(byte type, Object object) {
+    this.type = type;
+    this.object = object;
+  }
+
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    out.writeByte(FORMAT);
+    out.writeByte(type);
+    Output output = new Output();
+    switch (type) {
+      case REGISTRY:
+        ((Registry) object).writeCompact(output);
+        break;
+      case REGISTRY_DELTA:
+        ((Registry) object).writeCompactDelta(output);
+        break;
+      case GROUP:
+        ((Group) object).writeCompact(output);
+        break;
+      case STYLES:
+        ((Styles) object).writeCompact(output, output::indexOf);
+        break;
+      case SCRIPTS:
+        ((Scripts) object).writeCompact(output, output::indexOf);
+        break;
+      default:
+        throw new AssertionError("Unexpected type: " + type);
+    }
+    output.writeTo(out);
+  }
+
+  @Override
+  public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    byte format = in.readByte();
+    if (format != FORMAT) {
+      throw new InvalidObjectException("Unsupported format: " + format);
+    }
+    type = in.readByte();
+    Input input = Input.readFrom(in);
+    switch (type) {
+      case REGISTRY:
+        object = Registry.readCompact(input);
+        break;
+      case REGISTRY_DELTA:
+        object = Registry.readCompactDelta(input);
+        break;
+      case GROUP:
+        object = Group.readCompact(input);
+        break;
+      case STYLES:
+        Styles styles = new Styles();
+        styles.readCompact(input, input::getStyle);
+        object = styles;
+        break;
+      case SCRIPTS:
+        Scripts scripts = new Scripts();
+        scripts.readCompact(input, input::getScript);
+        object = scripts;
+        break;
+      default:
+        throw new InvalidObjectException("Unsupported type: " + type);
+    }
+  }
+
+  private Object readResolve() throws ObjectStreamException {
+    return object;
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import com.aoapps.lang.NullArgumentException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Adds a hash of the content of local files to the URIs of styles and scripts, so that they
+ * may be cached indefinitely.  The hash is added as the <code>v</code> query parameter, before
+ * any fragment, such as <code>/css/site.css?v=0123456789abcdef</code>.
+ *
+ * <p>A resource is local when its URI is a full path that the resolver maps to a regular file.
+ * All other resources are left as-is.</p>
+ *
+ * <p>The hash of each file is cached along with its size and modification time.  A file is only
+ * hashed again when either has changed.  Many files may be hashed in parallel, such as at startup,
+ * with {@link #hashAll(java.lang.Iterable)}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class Fingerprinter {
+
+  /**
+   * The hash of a file, along with the state of the file when hashed.
+   */
+  private static final class Fingerprint {
+
+    private final long size;
+    private final long lastModified;
+    private final String uri;
+
+    private Fingerprint(long size, long lastModified, String uri) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.uri = uri;
+    }
+  }
+
+  /**
+   * Hashes files in parallel, splitting until a single file remains.
+   */
+  private final class HashTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> uris;
+    private final int from;
+    private final int to;
+
+    private HashTask(List<String> uris, int from, int to) {
+      this.uris = uris;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        try {
+          getUri(uris.get(from));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new HashTask(uris, from, mid), new HashTask(uris, mid, to));
+      }
+    }
+  }
+
+  private final Function<? super String, ? extends Path> resolver;
+
+  /**
+   * The fingerprint of each local URI.
+   */
+  private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new fingerprinter.
+   *
+   * @param  resolver  Gets the file for a local URI, or {@code null} when the resource should not be fingerprinted
+   */
+  public Fingerprinter(Function<? super String, ? extends Path> resolver) {
+    if (resolver == null) {
+      throw new NullArgumentException("resolver");
+    }
+    this.resolver = resolver;
+  }
+
+  /**
+   * Hashes a file.
+   */
+  private static String hash(Path file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError("SHA-256 is required on all Java platforms", e);
+    }
+    byte[] buff = new byte[8192];
+    try (InputStream in = Files.newInputStream(file)) {
+      int count;
+      while ((count = in.read(buff)) != -1) {
+        digest.update(buff, 0, count);
+      }
+    }
+    return Bundler.toHex(digest.digest(), 8);
+  }
+
+  /**
+   * Adds the <code>v</code> query parameter to a URI, before any fragment.
+   */
+  private static String addVersion(String uri, String hash) {
+    int fragmentPos = uri.indexOf('#');
+    String beforeFragment = fragmentPos == -1 ? uri : uri.substring(0, fragmentPos);
+    StringBuilder versioned = new StringBuilder(uri.length() + 3 + hash.length());
+    versioned.append(beforeFragment).append(beforeFragment.indexOf('?') == -1 ? "?v=" : "&v=").append(hash);
+    if (fragmentPos != -1) {
+      versioned.append(uri, fragmentPos, uri.length());
+    }
+    return versioned.toString();
+  }
+
+  /**
+   * Gets the fingerprinted URI for a URI, hashing its file when first needed or when
+   * the size or modification time of the file has changed.
+   *
+   * @return  The fingerprinted URI or the given URI when not local
+   */
+  public String getUri(String uri) throws IOException {
+    if (uri == null || !HtmlRenderer.isFullPath(uri)) {
+      return uri;
+    }
+    Path file = resolver.apply(uri);
+    if (file == null || !Files.isRegularFile(file)) {
+      return uri;
+    }
+    // The state is taken before hashing, so any change while hashing causes another hash
+    long size = Files.size(file);
+    long lastModified = Files.getLastModifiedTime(file).toMillis();
+    Fingerprint fingerprint = fingerprints.get(uri);
+    if (fingerprint == null || fingerprint.size != size || fingerprint.lastModified != lastModified) {
+      // Hashing within compute makes any other thread wait for this hash instead of hashing the same file
+      try {
+        fingerprint = fingerprints.compute(uri, (key, existing) -> {
+          if (existing != null && existing.size == size && existing.lastModified == lastModified) {
+            return existing;
+          }
+          try {
+            return new Fingerprint(size, lastModified, addVersion(uri, hash(file)));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+    return fingerprint.uri;
+  }
+
+  /**
+   * Hashes the files of the given resources in parallel in the common {@link ForkJoinPool}.
+   * Files that are already hashed and unchanged are not hashed again.
+   */
+  public void hashAll(Iterable<? extends Resource<?>> resources) throws IOException {
+    if (resources == null) {
+      throw new NullArgumentException("resources");
+    }
+    Set<String> uris = new LinkedHashSet<>();
+    for (Resource<?> resource : resources) {
+      String uri = resource.getUri();
+      if (uri != null) {
+        uris.add(uri);
+      }
+    }
+    if (!uris.isEmpty()) {
+      try {
+        ForkJoinPool.commonPool().invoke(new HashTask(new ArrayList<>(uris), 0, uris.size()));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Gets the style with a fingerprinted URI.
+   *
+   * @return  The fingerprinted style or the given style when not local
+   */
+  public Style fingerprint(Style style) throws IOException {
+    if (style == null) {
+      throw new NullArgumentException("style");
+    }
+    String uri = style.getUri();
+    String fingerprinted = getUri(uri);
+    if (fingerprinted == uri) {
+      return style;
+    }
+    return Style.of(fingerprinted, style.getMedia(), style.getDirection(), style.getCrossorigin(), style.isDisabled());
+  }
+
+  /**
+   * Gets the script with a fingerprinted URI.
+   *
+   * @return  The fingerprinted script or the given script when not local
+   */
+  public Script fingerprint(Script script) throws IOException {
+    if (script == null) {
+      throw new NullArgumentException("script");
+    }
+    String uri = script.getUri();
+    String fingerprinted = getUri(uri);
+    if (fingerprinted == uri) {
+      return script;
+    }
+    return Script.of(fingerprinted, script.getPosition(), script.isAsync(), script.isDefer(), script.getCrossorigin());
+  }
+
+  /**
+   * Fingerprints sorted styles, such as before rendering with {@link HtmlRenderer}.
+   *
+   * @return  An unmodifiable list of the fingerprinted styles, in the same order.
+   */
+  public List<Style> fingerprintStyles(Iterable<? extends Style> styles) throws IOException {
+    if (styles == null) {
+      throw new NullArgumentException("styles");
+    }
+    List<Style> fingerprinted = new ArrayList<>();
+    for (Style style : styles) {
+      fingerprinted.add(fingerprint(style));
+    }
+    return Collections.unmodifiableList(fingerprinted);
+  }
+
+  /**
+   * Fingerprints sorted scripts, such as before rendering with {@link HtmlRenderer}.
+   *
+   * @return  An unmodifiable list of the fingerprinted scripts, in the same order.
+   */
+  public List<Script> fingerprintScripts(Iterable<? extends Script> scripts) throws IOException {
+    if (scripts == null) {
+      throw new NullArgumentException("scripts");
+    }
+    List<Script> fingerprinted = new ArrayList<>();
+    for (Script script : scripts) {
+      fingerprinted.add(fingerprint(script));
+    }
+    return Collections.unmodifiableList(fingerprinted);
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-web-resources-registry - Central registry for web resource management.
- * Copyright (C) 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -30,6 +30,7 @@ import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -100,10 +101,90 @@ public class Group implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The canonical instance of each distinct name, never removed.
+     */
+    private static final ConcurrentMap<String, Name> canonical = new ConcurrentHashMap<>();
+
+    /**
+     * The canonical names, indexed by id.  Grown while holding the lock on {@link #canonical}.
+     */
+    private static volatile Name[] byId = new Name[64];
+
+    /**
+     * The next id to assign, guarded by the lock on {@link #canonical}.
+     */
+    private static int nextId;
+
+    /**
+     * Gets the canonical instance for a name, making the given name canonical
+     * and assigning it a new id on first use.  Only called by {@link #valueOf(java.lang.String)}
+     * and {@link #readResolve()}, never during construction.
+     */
+    private static Name canonicalize(Name name) {
+      Name existing = canonical.get(name.name);
+      if (existing == null) {
+        synchronized (canonical) {
+          existing = canonical.get(name.name);
+          if (existing == null) {
+            int id = nextId++;
+            name.id = id;
+            Name[] names = byId;
+            if (id == names.length) {
+              names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[id] = name;
+            // Published before the name is visible
+            byId = names;
+            canonical.put(name.name, name);
+            existing = name;
+          }
+        }
+      }
+      return existing;
+    }
+
+    /**
+     * Gets the canonical name for the given string.  The name is only
+     * {@linkplain #checkName(java.lang.String) checked} on first use, so this is
+     * preferred over the constructor for names used repeatedly, such as on every request.
+     *
+     * @throws  IllegalArgumentException  when the group name is invalid
+     */
+    public static Name valueOf(String name) throws IllegalArgumentException {
+      if (name != null) {
+        Name existing = canonical.get(name);
+        if (existing != null) {
+          return existing;
+        }
+      }
+      return canonicalize(new Name(name));
+    }
+
+    /**
+     * Gets the canonical name by its {@linkplain #getId() id}.
+     */
+    static Name valueOf(int id) {
+      return byId[id];
+    }
+
     private final String name;
 
+    /**
+     * A small, dense id that is the same for all equal names within this JVM,
+     * or {@code -1} until first needed by a name that is not canonical.
+     */
+    private transient int id;
+
+    /**
+     * Creates a new name.  The name is not made canonical, so this does not
+     * retain names that are only used briefly.
+     *
+     * @see  #valueOf(java.lang.String)
+     */
     public Name(String name) throws IllegalArgumentException {
       this.name = checkName(name);
+      this.id = -1;
     }
 
     private void readObject(ObjectInputStream inputStream) throws ClassNotFoundException, IOException {
@@ -114,13 +195,42 @@ public class Group implements Serializable {
       }
     }
 
+    /**
+     * Resolves to the canonical name, which also restores the id.
+     */
+    private Object readResolve() {
+      return canonicalize(this);
+    }
+
+    /**
+     * Gets the id of this name, which is the same for all equal names within this JVM.
+     * Ids are assigned from zero in the order names are first used, for use as bit or array indexes.
+     * A name that is not canonical is made canonical when its id is first needed.
+     */
+    int getId() {
+      int i = id;
+      if (i == -1) {
+        i = valueOf(name).id;
+        id = i;
+      }
+      return i;
+    }
+
+    /**
+     * Canonical names are compared by {@linkplain #getId() id}, without comparing the strings.
+     */
     @Override
     public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
       if (!(obj instanceof Name)) {
         return false;
       }
       Name other = (Name) obj;
-      return name.equals(other.name);
+      int i = id;
+      int otherId = other.id;
+      return (i != -1 && otherId != -1) ? i == otherId : name.equals(other.name);
     }
 
     @Override
@@ -130,7 +240,7 @@ public class Group implements Serializable {
 
     @Override
     public int compareTo(Name other) {
-      return this == other ? 0 : name.compareTo(other.name);
+      return (id != -1 && id == other.id) ? 0 : name.compareTo(other.name);
     }
 
     @Override
@@ -168,11 +278,14 @@ public class Group implements Serializable {
   /**
    * All concrete implementations of Resource must be comparable to themselves,
    * so we maintain one sorted set per type.
+   *
+   * <p>{@link Style} and {@link Script} are always present as {@link #styles} and {@link #scripts},
+   * so this map only contains other types and is not created until first needed.</p>
    */
-  private final ConcurrentMap<
+  private volatile ConcurrentMap<
       Class<? extends Resource<?>>,
       ResourcesEntry<?, ?>
-      > resourcesByClass = new ConcurrentHashMap<>();
+      > resourcesByClass;
 
   /**
    * The partition for CSS styles.
@@ -188,57 +301,44 @@ public class Group implements Serializable {
    */
   public final Scripts scripts;
 
+  /**
+   * Set once {@linkplain #freeze() frozen}.
+   */
+  private transient volatile boolean frozen;
+
+  /**
+   * Counts the non-empty partitions, see {@link #isEmpty()}.
+   */
+  private transient NonEmptyCounter nonEmpty;
+
   /**
    * Creates a new group.
    */
   public Group() {
     styles = new Styles();
-    if (
-        resourcesByClass.put(
-            Style.class,
-            // Java 9: new ResourcesEntry<>
-            new ResourcesEntry<Style, Styles>(
-                Styles::union,
-                styles
-            )
-        ) != null
-    ) {
-      throw new IllegalStateException();
-    }
     scripts = new Scripts();
-    if (
-        resourcesByClass.put(
-            Script.class,
-            // Java 9: new ResourcesEntry<>
-            new ResourcesEntry<Script, Scripts>(
-                Scripts::union,
-                scripts
-            )
-        ) != null
-    ) {
-      throw new IllegalStateException();
-    }
+    initCounter();
   }
 
   /**
    * Copy constructor.
+   *
+   * <p>Each partition shares the immutable state of the other group, so only the
+   * partition objects themselves are allocated.  A partition is cloned on its
+   * first change.</p>
    */
   protected Group(Group other) {
-    resourcesByClass.putAll(other.resourcesByClass);
-    // Copy each
-    for (Map.Entry<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> entry : resourcesByClass.entrySet()) {
-      entry.setValue(entry.getValue().copy());
-    }
-    // Set styles
-    styles = (Styles) resourcesByClass.get(Style.class).resources;
-    if (styles == null) {
-      throw new IllegalStateException();
-    }
-    // Set scripts
-    scripts = (Scripts) resourcesByClass.get(Script.class).resources;
-    if (scripts == null) {
-      throw new IllegalStateException();
+    styles = other.styles.copy();
+    scripts = other.scripts.copy();
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> otherResourcesByClass = other.resourcesByClass;
+    if (otherResourcesByClass != null) {
+      ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> copy = new ConcurrentHashMap<>(otherResourcesByClass.size());
+      for (Map.Entry<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> entry : otherResourcesByClass.entrySet()) {
+        copy.put(entry.getKey(), entry.getValue().copy());
+      }
+      resourcesByClass = copy;
     }
+    initCounter();
   }
 
   /**
@@ -246,58 +346,242 @@ public class Group implements Serializable {
    */
   @SuppressWarnings({"unchecked", "rawtypes"})
   protected Group(Collection<? extends Group> others) {
-    // Find all resources
+    // Union styles and scripts
+    List<Styles> allStyles = new ArrayList<>(others.size());
+    List<Scripts> allScripts = new ArrayList<>(others.size());
+    for (Group other : others) {
+      allStyles.add(other.styles);
+      allScripts.add(other.scripts);
+    }
+    styles = Styles.union(allStyles);
+    scripts = Scripts.union(allScripts);
+    // Find all other resources
     Map<
         Class<? extends Resource<?>>,
         List<ResourcesEntry<?, ?>>
         > allResources = new HashMap<>();
     for (Group other : others) {
-      for (Map.Entry<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> entry : other.resourcesByClass.entrySet()) {
+      ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> otherResourcesByClass = other.resourcesByClass;
+      if (otherResourcesByClass != null) {
+        for (Map.Entry<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> entry : otherResourcesByClass.entrySet()) {
+          Class<? extends Resource<?>> clazz = entry.getKey();
+          List<ResourcesEntry<?, ?>> resourcesForClass = allResources.get(clazz);
+          if (resourcesForClass == null) {
+            resourcesForClass = new ArrayList<>();
+            allResources.put(clazz, resourcesForClass);
+          }
+          resourcesForClass.add(entry.getValue());
+        }
+      }
+    }
+    // Union all other resources
+    if (!allResources.isEmpty()) {
+      ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> union = new ConcurrentHashMap<>(allResources.size());
+      for (Map.Entry<Class<? extends Resource<?>>, List<ResourcesEntry<?, ?>>> entry : allResources.entrySet()) {
         Class<? extends Resource<?>> clazz = entry.getKey();
-        List<ResourcesEntry<?, ?>> resourcesForClass = allResources.get(clazz);
-        if (resourcesForClass == null) {
-          resourcesForClass = new ArrayList<>();
-          allResources.put(clazz, resourcesForClass);
+        List<ResourcesEntry<?, ?>> resourcesEntries = entry.getValue();
+        List<Resources<?>> resourcesList = new ArrayList<>();
+        SerializableFunction unionizer = null;
+        for (ResourcesEntry<?, ?> resourcesEntry : resourcesEntries) {
+          if (unionizer == null) {
+            unionizer = resourcesEntry.unionizer;
+          }
+          resourcesList.add(resourcesEntry.resources);
+        }
+        if (unionizer != null) {
+          union.put(
+              clazz,
+              new ResourcesEntry(
+                  unionizer,
+                  (Resources) unionizer.apply(resourcesList)
+              )
+          );
         }
-        resourcesForClass.add(entry.getValue());
+      }
+      resourcesByClass = union;
+    }
+    initCounter();
+  }
+
+  /**
+   * Adds all partitions as members of a new counter, before this group is visible to other threads.
+   */
+  private void initCounter() {
+    NonEmptyCounter counter = new NonEmptyCounter();
+    styles.setCounter(counter);
+    scripts.setCounter(counter);
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    if (map != null) {
+      for (ResourcesEntry<?, ?> entry : map.values()) {
+        entry.resources.setCounter(counter);
       }
     }
-    // Union all resources
-    for (Map.Entry<Class<? extends Resource<?>>, List<ResourcesEntry<?, ?>>> entry : allResources.entrySet()) {
-      Class<? extends Resource<?>> clazz = entry.getKey();
-      List<ResourcesEntry<?, ?>> resourcesEntries = entry.getValue();
-      List<Resources<?>> resourcesList = new ArrayList<>();
-      SerializableFunction unionizer = null;
-      for (ResourcesEntry<?, ?> resourcesEntry : resourcesEntries) {
-        if (unionizer == null) {
-          unionizer = resourcesEntry.unionizer;
+    nonEmpty = counter;
+  }
+
+  /**
+   * Replaces the resources other than styles and scripts, before this group is visible to other threads.
+   */
+  private void setResourcesByClass(ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map) {
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> old = resourcesByClass;
+    if (old != null) {
+      for (ResourcesEntry<?, ?> entry : old.values()) {
+        if (!entry.resources.isEmpty()) {
+          nonEmpty.changed(false);
         }
-        resourcesList.add(resourcesEntry.resources);
       }
-      if (unionizer != null) {
-        resourcesByClass.put(
-            clazz,
-            new ResourcesEntry(
-                unionizer,
-                (Resources) unionizer.apply(resourcesList)
-            )
-        );
+    }
+    if (map != null) {
+      for (ResourcesEntry<?, ?> entry : map.values()) {
+        entry.resources.setCounter(nonEmpty);
+      }
+    }
+    resourcesByClass = map;
+  }
+
+  /**
+   * Adds this group as a member of the given counter, which is then told each time
+   * this group changes between empty and non-empty.  This must be done before this
+   * group is visible to other threads.
+   */
+  final void setCounter(NonEmptyCounter counter) {
+    nonEmpty.setParent(counter);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    if (map != null) {
+      // Styles and scripts were included in the map before they became separate
+      map.remove(Style.class);
+      map.remove(Script.class);
+    }
+    initCounter();
+  }
+
+  /**
+   * Uses the {@linkplain CompactForm compact form}.
+   */
+  private Object writeReplace() {
+    return new CompactForm(CompactForm.GROUP, this);
+  }
+
+  /**
+   * Writes this group in the {@linkplain CompactForm compact form}.  Resources
+   * other than styles and scripts are written with default serialization.
+   */
+  final void writeCompact(CompactForm.Output out) throws IOException {
+    styles.writeCompact(out, out::indexOf);
+    scripts.writeCompact(out, out::indexOf);
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    out.writeObject(map == null || map.isEmpty() ? null : map);
+  }
+
+  /**
+   * Reads the resources other than styles and scripts, written with default serialization.
+   */
+  @SuppressWarnings("unchecked")
+  private static ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> readResourcesByClass(
+      CompactForm.Input in
+  ) throws IOException {
+    Object others = in.readObject();
+    if (others != null && !(others instanceof ConcurrentMap)) {
+      throw new InvalidObjectException("Unexpected resources: " + others.getClass().getName());
+    }
+    return (ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>>) others;
+  }
+
+  /**
+   * Reads a group from the {@linkplain CompactForm compact form}.
+   */
+  static Group readCompact(CompactForm.Input in) throws IOException {
+    Group group = new Group();
+    group.styles.readCompact(in, in::getStyle);
+    group.scripts.readCompact(in, in::getScript);
+    group.setResourcesByClass(readResourcesByClass(in));
+    return group;
+  }
+
+  /**
+   * Checks if the resources other than styles and scripts are the same as those of
+   * the given group, by identity of their immutable state.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private boolean isSameOthers(Group other) {
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> otherMap = other.resourcesByClass;
+    int size = map == null ? 0 : map.size();
+    int otherSize = otherMap == null ? 0 : otherMap.size();
+    if (size != otherSize) {
+      return false;
+    }
+    if (size != 0) {
+      for (Map.Entry<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> entry : map.entrySet()) {
+        ResourcesEntry<?, ?> otherEntry = otherMap.get(entry.getKey());
+        if (otherEntry == null || !((Resources) entry.getValue().resources).isSameState(otherEntry.resources)) {
+          return false;
+        }
       }
     }
-    // Set styles
-    styles = (Styles) resourcesByClass.get(Style.class).resources;
-    if (styles == null) {
-      throw new IllegalStateException();
+    return true;
+  }
+
+  /**
+   * Checks if this group has the same resources and ordering constraints as the given
+   * group, by identity of their immutable state.  This is the case for a copy until
+   * either is changed.
+   */
+  final boolean isSameState(Group other) {
+    return
+        styles.isSameState(other.styles)
+            && scripts.isSameState(other.scripts)
+            && isSameOthers(other);
+  }
+
+  /**
+   * Gets a fingerprint of the styles and scripts of this group.  Other resources are
+   * not included since their hash codes might not be consistent between JVMs.
+   *
+   * @see  Resources#fingerprint()
+   */
+  final long fingerprint() {
+    return styles.fingerprint() * 31 + scripts.fingerprint();
+  }
+
+  /**
+   * Writes the changes of this group from the given baseline group in the
+   * {@linkplain CompactForm compact form}.  When resources other than styles and scripts
+   * have changed, they are all written with default serialization.
+   */
+  final void writeCompactDelta(CompactForm.Output out, Group baseline) throws IOException {
+    styles.writeCompactDelta(out, baseline.styles, out::indexOf);
+    scripts.writeCompactDelta(out, baseline.scripts, out::indexOf);
+    if (isSameOthers(baseline)) {
+      out.writeVarInt(0);
+    } else {
+      out.writeVarInt(1);
+      ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+      out.writeObject(map == null || map.isEmpty() ? null : map);
     }
-    // Set scripts
-    scripts = (Scripts) resourcesByClass.get(Script.class).resources;
-    if (scripts == null) {
-      throw new IllegalStateException();
+  }
+
+  /**
+   * Applies the changes read from the {@linkplain CompactForm compact form} to this new group,
+   * which is a copy of the baseline group.
+   */
+  final void readCompactDelta(CompactForm.Input in) throws IOException {
+    styles.readCompactDelta(in, in::getStyle);
+    scripts.readCompactDelta(in, in::getScript);
+    if (in.readVarInt() != 0) {
+      setResourcesByClass(readResourcesByClass(in));
     }
   }
 
   /**
-   * Gets a deep copy of this group.
+   * Gets a copy of this group.  The copy shares structure with this group
+   * until either is changed.
+   *
+   * <p>The copy of a {@linkplain #freeze() frozen} group is not frozen.</p>
    */
   protected Group copy() {
     return new Group(this);
@@ -322,18 +606,42 @@ public class Group implements Serializable {
   /**
    * Gets the resources for a given type.
    */
+  @SuppressWarnings("unchecked")
   public <
       R extends Resource<R> & Comparable<? super R>,
       S extends Resources<R>
       > Resources<R> getResources(Class<R> clazz, SerializableFunction<? super Collection<? extends S>, S> unionizer) {
-    @SuppressWarnings("unchecked")
-    ResourcesEntry<R, S> entry = (ResourcesEntry) resourcesByClass.get(clazz);
+    if (Style.class.equals(clazz)) {
+      return (Resources) styles;
+    }
+    if (Script.class.equals(clazz)) {
+      return (Resources) scripts;
+    }
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    if (map == null) {
+      synchronized (this) {
+        map = resourcesByClass;
+        if (map == null) {
+          map = new ConcurrentHashMap<>();
+          resourcesByClass = map;
+        }
+      }
+    }
+    ResourcesEntry<R, S> entry = (ResourcesEntry) map.get(clazz);
     if (entry == null) {
-      entry = new ResourcesEntry<>(unionizer, new Resources<>());
-      @SuppressWarnings("unchecked")
-      ResourcesEntry<R, S> existing = (ResourcesEntry) resourcesByClass.putIfAbsent(clazz, entry);
-      if (existing != null) {
-        entry = existing;
+      // Locking orders the creation of the resources with freeze()
+      synchronized (this) {
+        entry = (ResourcesEntry) map.get(clazz);
+        if (entry == null) {
+          if (frozen) {
+            // Empty resources, not added to this group
+            return new Resources<R>().freeze();
+          }
+          Resources<R> resources = new Resources<>();
+          resources.setCounter(nonEmpty);
+          entry = new ResourcesEntry<>(unionizer, resources);
+          map.put(clazz, entry);
+        }
       }
     }
     return entry.resources;
@@ -342,14 +650,84 @@ public class Group implements Serializable {
   /**
    * Gets all resources are empty.
    *
+   * <p>This does not lock, reading a count of the non-empty partitions that is
+   * maintained as they change.</p>
+   *
    * @see  Resources#isEmpty()
    */
   public boolean isEmpty() {
-    for (ResourcesEntry<?, ?> entry : resourcesByClass.values()) {
-      if (!entry.resources.isEmpty()) {
-        return false;
+    return nonEmpty.isEmpty();
+  }
+
+  /**
+   * Performs the sort of all resources, which validates all ordering constraints.
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   *
+   * @see  Resources#getSorted()
+   */
+  void validate() throws IllegalStateException {
+    styles.getSorted();
+    scripts.getSorted();
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    if (map != null) {
+      for (ResourcesEntry<?, ?> entry : map.values()) {
+        entry.resources.getSorted();
       }
     }
-    return true;
+  }
+
+  /**
+   * Freezes this group, after which its resources may no longer be changed.
+   * All resources are sorted first, so nothing is frozen when any ordering
+   * constraint is invalid.
+   *
+   * <p>Requesting the resources of a type not in a frozen group returns empty,
+   * frozen resources that are not added to the group.</p>
+   *
+   * @return  {@code this}
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   *
+   * @see  Resources#freeze()
+   */
+  public synchronized Group freeze() throws IllegalStateException {
+    validate();
+    frozen = true;
+    styles.freeze();
+    scripts.freeze();
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    if (map != null) {
+      for (ResourcesEntry<?, ?> entry : map.values()) {
+        entry.resources.freeze();
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Checks if this group is {@linkplain #freeze() frozen}.
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Gets the version of this group, which is the greatest
+   * {@linkplain Resources#getVersion() version} of its resources.  Since versions
+   * are assigned from a single increasing counter, this changes whenever any of
+   * the resources of this group change.
+   *
+   * <p>This does not lock.</p>
+   */
+  public long getVersion() {
+    long version = Math.max(styles.getVersion(), scripts.getVersion());
+    ConcurrentMap<Class<? extends Resource<?>>, ResourcesEntry<?, ?>> map = resourcesByClass;
+    if (map != null) {
+      for (ResourcesEntry<?, ?> entry : map.values()) {
+        version = Math.max(version, entry.resources.getVersion());
+      }
+    }
+    return version;
   }
 }
@@ -0,0 +1,374 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import com.aoapps.lang.NullArgumentException;
+import java.io.IOException;
+
+/**
+ * Writes the HTML tags for {@link Style styles} and {@link Script scripts} directly to an {@link Appendable},
+ * such as a {@link java.io.Writer}.
+ *
+ * <p>The escaped attributes of each resource are created on first use and cached by the immutable resource,
+ * so rendering sorted resources is a few appends per tag without any escaping or intermediate buffers.</p>
+ *
+ * <p>URIs are resolved as described by {@link Resource#getUri()}: absolute URIs are written as-is,
+ * full paths are prefixed with the {@linkplain #getContextPath() context path}, and relative paths
+ * are resolved against the context path.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class HtmlRenderer {
+
+  /**
+   * Renders HTML, where <code>&lt;link&gt;</code> is a void element.
+   */
+  public static final HtmlRenderer HTML = new HtmlRenderer(false, "");
+
+  /**
+   * Renders XHTML, where <code>&lt;link /&gt;</code> is self-closed.
+   */
+  public static final HtmlRenderer XHTML = new HtmlRenderer(true, "");
+
+  private static final String LINK_START = "<link rel=\"stylesheet\" href=\"";
+  private static final String LINK_END_HTML = ">";
+  private static final String LINK_END_XHTML = " />";
+  private static final String SCRIPT_START = "<script src=\"";
+  private static final String SCRIPT_END = "></script>";
+
+  /**
+   * Encodes a value for use within a double-quoted attribute.
+   *
+   * @return  The value itself when nothing needs to be escaped
+   */
+  static String encodeAttribute(String value) {
+    int len = value.length();
+    int i = 0;
+    while (i < len) {
+      char ch = value.charAt(i);
+      if (ch == '&' || ch == '<' || ch == '>' || ch == '"') {
+        break;
+      }
+      i++;
+    }
+    if (i == len) {
+      return value;
+    }
+    StringBuilder encoded = new StringBuilder(len + 16).append(value, 0, i);
+    for (; i < len; i++) {
+      char ch = value.charAt(i);
+      switch (ch) {
+        case '&':
+          encoded.append("&amp;");
+          break;
+        case '<':
+          encoded.append("&lt;");
+          break;
+        case '>':
+          encoded.append("&gt;");
+          break;
+        case '"':
+          encoded.append("&quot;");
+          break;
+        default:
+          encoded.append(ch);
+      }
+    }
+    return encoded.toString();
+  }
+
+  /**
+   * Checks if a URI is absolute, either with a scheme or protocol-relative, which is written as-is.
+   */
+  static boolean isAbsolute(String uri) {
+    int len = uri.length();
+    if (len >= 2 && uri.charAt(0) == '/' && uri.charAt(1) == '/') {
+      return true;
+    }
+    if (len == 0 || !isAsciiLetter(uri.charAt(0))) {
+      return false;
+    }
+    for (int i = 1; i < len; i++) {
+      char ch = uri.charAt(i);
+      if (ch == ':') {
+        return true;
+      }
+      if (!isAsciiLetter(ch) && (ch < '0' || ch > '9') && ch != '+' && ch != '-' && ch != '.') {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isAsciiLetter(char ch) {
+    return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+  }
+
+  /**
+   * Checks if a URI is a full path, which is prefixed with the context path.
+   */
+  static boolean isFullPath(String uri) {
+    return
+        uri.charAt(0) == '/'
+        && (uri.length() == 1 || uri.charAt(1) != '/');
+  }
+
+  /**
+   * The escaped attributes of a resource, which do not depend on the renderer.  Created once
+   * by each immutable resource.
+   */
+  static final class Tag {
+
+    /**
+     * The number of leading <code>../</code> of a relative path, zero for a full path,
+     * or {@code -1} for an absolute URI.
+     */
+    private final int parents;
+
+    /**
+     * The escaped URI, without any leading slash or <code>../</code> of a path, along with the
+     * closing quote of its attribute and all the escaped attributes that follow.
+     */
+    private final String attributes;
+
+    /**
+     * @param  uri         The URI of the resource
+     * @param  attributes  The escaped attributes following the URI
+     */
+    Tag(String uri, String attributes) {
+      int p;
+      int start;
+      if (isAbsolute(uri)) {
+        p = -1;
+        start = 0;
+      } else if (uri.startsWith("/")) {
+        p = 0;
+        start = 1;
+      } else {
+        p = 0;
+        start = 0;
+        while (uri.startsWith("../", start)) {
+          p++;
+          start += 3;
+        }
+      }
+      this.parents = p;
+      this.attributes = encodeAttribute(uri.substring(start)) + '"' + attributes;
+    }
+  }
+
+  private final boolean xhtml;
+  private final String contextPath;
+
+  /**
+   * The escaped prefix of a path by its number of leading <code>../</code>: the context path
+   * with that many trailing segments removed, followed by a slash.
+   */
+  private final String[] prefixes;
+
+  private HtmlRenderer(boolean xhtml, String contextPath) {
+    this.xhtml = xhtml;
+    this.contextPath = contextPath;
+    int segments = 0;
+    for (int i = 0, len = contextPath.length(); i < len; i++) {
+      if (contextPath.charAt(i) == '/') {
+        segments++;
+      }
+    }
+    prefixes = new String[segments + 1];
+    String path = contextPath;
+    for (int i = 0; i <= segments; i++) {
+      prefixes[i] = encodeAttribute(path) + '/';
+      path = path.substring(0, Math.max(path.lastIndexOf('/'), 0));
+    }
+  }
+
+  /**
+   * Renderers are equal when they render the same tags.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof HtmlRenderer)) {
+      return false;
+    }
+    HtmlRenderer other = (HtmlRenderer) obj;
+    return xhtml == other.xhtml && contextPath.equals(other.contextPath);
+  }
+
+  @Override
+  public int hashCode() {
+    return contextPath.hashCode() * 31 + (xhtml ? 1 : 0);
+  }
+
+  /**
+   * Is XHTML rendered?
+   */
+  public boolean isXhtml() {
+    return xhtml;
+  }
+
+  /**
+   * Gets the context path that prefixes full paths, which is empty by default.
+   */
+  public String getContextPath() {
+    return contextPath;
+  }
+
+  /**
+   * Gets a renderer with the given context path.
+   *
+   * @param  contextPath  The context path, such as from <code>HttpServletRequest.getContextPath()</code>.
+   *                      A trailing slash is removed.  {@code null} is treated as empty.
+   *
+   * @return  This renderer when the context path is unchanged
+   *
+   * @throws  IllegalArgumentException  when the context path is not empty and does not begin with a slash
+   */
+  public HtmlRenderer withContextPath(String contextPath) throws IllegalArgumentException {
+    if (contextPath == null) {
+      contextPath = "";
+    } else if (contextPath.endsWith("/")) {
+      contextPath = contextPath.substring(0, contextPath.length() - 1);
+    }
+    if (!contextPath.isEmpty() && contextPath.charAt(0) != '/') {
+      throw new IllegalArgumentException("contextPath must begin with a slash: " + contextPath);
+    }
+    if (contextPath.equals(this.contextPath)) {
+      return this;
+    }
+    return new HtmlRenderer(xhtml, contextPath);
+  }
+
+  /**
+   * Writes the resolved URI and the attributes that follow.
+   *
+   * @throws  IllegalArgumentException  when a relative path goes past the root path
+   */
+  private void append(Tag tag, Resource<?> resource, Appendable out) throws IOException, IllegalArgumentException {
+    int parents = tag.parents;
+    if (parents != -1) {
+      if (parents >= prefixes.length) {
+        throw new IllegalArgumentException("Relative path goes past the root path \"/\": " + resource);
+      }
+      out.append(prefixes[parents]);
+    }
+    out.append(tag.attributes);
+  }
+
+  /**
+   * Writes the <code>&lt;link&gt;</code> tag for a style.
+   *
+   * @return  The given {@link Appendable}
+   *
+   * @throws  IllegalArgumentException  when the style has no URI or its relative path goes past the root path
+   */
+  public <A extends Appendable> A append(Style style, A out) throws IOException, IllegalArgumentException {
+    if (style == null) {
+      throw new NullArgumentException("style");
+    }
+    if (out == null) {
+      throw new NullArgumentException("out");
+    }
+    if (style.getUri() == null) {
+      throw new IllegalArgumentException("Style has no href");
+    }
+    out.append(LINK_START);
+    append(style.getHtmlTag(), style, out);
+    out.append(xhtml ? LINK_END_XHTML : LINK_END_HTML);
+    return out;
+  }
+
+  /**
+   * Writes the <code>&lt;script&gt;</code> tag for a script.
+   *
+   * @return  The given {@link Appendable}
+   *
+   * @throws  IllegalArgumentException  when the script has no URI or its relative path goes past the root path
+   */
+  public <A extends Appendable> A append(Script script, A out) throws IOException, IllegalArgumentException {
+    if (script == null) {
+      throw new NullArgumentException("script");
+    }
+    if (out == null) {
+      throw new NullArgumentException("out");
+    }
+    if (script.getUri() == null) {
+      throw new IllegalArgumentException("Script has no src");
+    }
+    out.append(SCRIPT_START);
+    append(script.getHtmlTag(), script, out);
+    out.append(SCRIPT_END);
+    return out;
+  }
+
+  /**
+   * Writes the <code>&lt;link&gt;</code> tags for styles, each followed by a newline.
+   * Styles without a URI are skipped.
+   *
+   * @param  styles  The styles, typically in sorted order
+   *
+   * @return  The given {@link Appendable}
+   *
+   * @throws  IllegalArgumentException  when the relative path of a style goes past the root path
+   *
+   * @see  Styles#getSorted()
+   * @see  RenderPlan#getStyles(com.aoapps.web.resources.registry.Style.Direction)
+   */
+  public <A extends Appendable> A appendStyles(Iterable<? extends Style> styles, A out) throws IOException, IllegalArgumentException {
+    if (styles == null) {
+      throw new NullArgumentException("styles");
+    }
+    for (Style style : styles) {
+      if (style.getUri() != null) {
+        append(style, out).append('\n');
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Writes the <code>&lt;script&gt;</code> tags for scripts, each followed by a newline.
+   * Scripts without a URI are skipped.
+   *
+   * @param  scripts  The scripts, typically in sorted order
+   *
+   * @return  The given {@link Appendable}
+   *
+   * @throws  IllegalArgumentException  when the relative path of a script goes past the root path
+   *
+   * @see  Scripts#getSorted()
+   * @see  RenderPlan#getScripts(com.aoapps.web.resources.registry.Script.Position)
+   */
+  public <A extends Appendable> A appendScripts(Iterable<? extends Script> scripts, A out) throws IOException, IllegalArgumentException {
+    if (scripts == null) {
+      throw new NullArgumentException("scripts");
+    }
+    for (Script script : scripts) {
+      if (script.getUri() != null) {
+        append(script, out).append('\n');
+      }
+    }
+    return out;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A weak canonicalizing map.  Values are kept only while in use elsewhere.
+ *
+ * <p>Lookups do not lock.  Both keys and values are weakly referenced, and the entries
+ * of collected keys or values are removed when adding.  A {@code null} key is allowed.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Interner<K, V> {
+
+  /**
+   * A weakly referenced key, equal to other keys with equal referents.  Once the referent
+   * is collected, this is equal only to itself, so its entry may still be removed.
+   */
+  private static final class WeakKey extends WeakReference<Object> {
+
+    private final int hash;
+
+    private WeakKey(Object key, ReferenceQueue<Object> queue) {
+      super(key, queue);
+      this.hash = key.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof WeakKey)) {
+        return false;
+      }
+      Object key = get();
+      return key != null && key.equals(((WeakKey) obj).get());
+    }
+  }
+
+  /**
+   * Finds the entry for a key without creating a reference.
+   */
+  private static final class Lookup {
+
+    private final Object key;
+
+    private Lookup(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof WeakKey) && key.equals(((WeakKey) obj).get());
+    }
+  }
+
+  /**
+   * A weakly referenced value, along with its key so its entry may be removed once collected.
+   */
+  private static final class WeakValue<V> extends WeakReference<V> {
+
+    private final WeakKey key;
+
+    private WeakValue(V value, WeakKey key, ReferenceQueue<Object> queue) {
+      super(value, queue);
+      this.key = key;
+    }
+  }
+
+  /**
+   * Stands in for the {@code null} key, which is never collected.
+   */
+  private static final Object NULL_KEY = new Object();
+
+  private static Object maskNull(Object key) {
+    return key == null ? NULL_KEY : key;
+  }
+
+  private final ConcurrentMap<Object, WeakValue<V>> map = new ConcurrentHashMap<>();
+
+  private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+  /**
+   * Removes the entries of collected keys and values.
+   */
+  private void expunge() {
+    Reference<?> ref;
+    while ((ref = queue.poll()) != null) {
+      if (ref instanceof WeakValue) {
+        WeakValue<?> value = (WeakValue<?>) ref;
+        map.remove(value.key, value);
+      } else {
+        map.remove(ref);
+      }
+    }
+  }
+
+  /**
+   * Gets the canonical value for the given key.
+   *
+   * @return  The value or {@code null} when not found.
+   */
+  V get(K key) {
+    WeakValue<V> ref = map.get(new Lookup(maskNull(key)));
+    return ref == null ? null : ref.get();
+  }
+
+  /**
+   * Gets the canonical value for the given key, adding the given value when not found.
+   *
+   * <p>The key must be reachable from the value, such as the value itself or one
+   * of its fields, so the entry is kept while the value is in use.</p>
+   *
+   * @return  The existing value or {@code value} when added.
+   */
+  V intern(K key, V value) {
+    V existing = get(key);
+    if (existing != null) {
+      return existing;
+    }
+    expunge();
+    WeakKey weakKey = new WeakKey(maskNull(key), queue);
+    WeakValue<V> newRef = new WeakValue<>(value, weakKey, queue);
+    while (true) {
+      WeakValue<V> ref = map.putIfAbsent(weakKey, newRef);
+      if (ref == null) {
+        return value;
+      }
+      existing = ref.get();
+      if (existing != null) {
+        return existing;
+      }
+      // Replacing would keep the old key, which may no longer be reachable
+      map.remove(weakKey, ref);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the non-empty members of a container, such as the partitions of a {@link Group}
+ * or the groups of a {@link Registry}, so the container is checked for empty with a single
+ * volatile read.
+ *
+ * <p>Each member reports its changes between empty and non-empty while holding its own lock,
+ * so the changes of a single member are never reordered.  A counter is itself a member of its
+ * parent, reporting when its count changes between zero and non-zero.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class NonEmptyCounter {
+
+  private final AtomicInteger count = new AtomicInteger();
+
+  private volatile NonEmptyCounter parent;
+
+  /**
+   * Reports a member changing between empty and non-empty.
+   *
+   * @param  nonEmpty  {@code true} when the member is now non-empty
+   */
+  void changed(boolean nonEmpty) {
+    NonEmptyCounter p;
+    if (nonEmpty) {
+      if (count.incrementAndGet() == 1 && (p = parent) != null) {
+        p.changed(true);
+      }
+    } else {
+      if (count.decrementAndGet() == 0 && (p = parent) != null) {
+        p.changed(false);
+      }
+    }
+  }
+
+  /**
+   * Adds this counter as a member of the given parent.  This must be done before the
+   * container of this counter is visible to other threads.
+   */
+  void setParent(NonEmptyCounter parent) {
+    assert this.parent == null;
+    this.parent = parent;
+    if (count.get() != 0) {
+      parent.changed(true);
+    }
+  }
+
+  boolean isEmpty() {
+    return count.get() == 0;
+  }
+}
@@ -0,0 +1,751 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+
+/**
+ * An immutable map built on a hash array mapped trie.  Changes return a new map
+ * that shares all unchanged nodes with the original, so both copies and single
+ * changes are inexpensive.
+ *
+ * <p>Neither keys nor values may be {@code null}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+  private static final int BITS = 5;
+
+  private static final int MASK = (1 << BITS) - 1;
+
+  /**
+   * Spreads the higher bits of the hash code, since the trie consumes the lower bits first.
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * A node of the trie.  Nodes are never modified once published.
+   */
+  private abstract static class Node {
+
+    /**
+     * Finds the value for a key.
+     *
+     * @return  the value or {@code null} when not found
+     */
+    abstract Object find(int shift, int hash, Object key);
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param  added  incremented when the key is new
+     *
+     * @return  the new node or {@code this} when unchanged
+     */
+    abstract Node put(int shift, int hash, Object key, Object value, int[] added);
+
+    /**
+     * Removes a key.
+     *
+     * @return  the new node, {@code this} when unchanged, or {@code null} when empty
+     */
+    abstract Node remove(int shift, int hash, Object key);
+
+    /**
+     * Gets the number of key/value pairs stored directly in this node.
+     */
+    abstract int pairCount();
+
+    /**
+     * Gets the number of child nodes.
+     */
+    abstract int nodeCount();
+
+    abstract Object getKey(int index);
+
+    abstract Object getValue(int index);
+
+    abstract Node getNode(int index);
+  }
+
+  /**
+   * Creates a node for two pairs that share the same hash bits up to the given shift.
+   */
+  private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+    int hash1 = hash(key1);
+    if (hash1 == hash2) {
+      return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+    }
+    int[] added = new int[1];
+    return BitmapNode.EMPTY
+        .put(shift, hash1, key1, value1, added)
+        .put(shift, hash2, key2, value2, added);
+  }
+
+  /**
+   * A node with up to 32 slots, where each slot is either a key/value pair or a child node.
+   * Pairs are stored from the start of the array, child nodes from the end, both in
+   * bitmap order.
+   */
+  private static final class BitmapNode extends Node {
+
+    private static final BitmapNode EMPTY = new BitmapNode(0, 0, new Object[0]);
+
+    private final int dataMap;
+    private final int nodeMap;
+    private final Object[] array;
+
+    private BitmapNode(int dataMap, int nodeMap, Object[] array) {
+      this.dataMap = dataMap;
+      this.nodeMap = nodeMap;
+      this.array = array;
+    }
+
+    private static int bit(int shift, int hash) {
+      return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private int dataIndex(int bit) {
+      return Integer.bitCount(dataMap & (bit - 1));
+    }
+
+    private int nodeArrayIndex(int bit) {
+      return array.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      int bit = bit(shift, hash);
+      if ((dataMap & bit) != 0) {
+        int i = dataIndex(bit) * 2;
+        return key.equals(array[i]) ? array[i + 1] : null;
+      }
+      if ((nodeMap & bit) != 0) {
+        return ((Node) array[nodeArrayIndex(bit)]).find(shift + BITS, hash, key);
+      }
+      return null;
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, int[] added) {
+      int bit = bit(shift, hash);
+      if ((dataMap & bit) != 0) {
+        int i = dataIndex(bit) * 2;
+        Object existingKey = array[i];
+        if (key.equals(existingKey)) {
+          if (array[i + 1] == value) {
+            return this;
+          }
+          Object[] newArray = array.clone();
+          newArray[i + 1] = value;
+          return new BitmapNode(dataMap, nodeMap, newArray);
+        }
+        // Move the existing pair and the new pair into a child node
+        Node child = createNode(shift + BITS, existingKey, array[i + 1], hash, key, value);
+        added[0]++;
+        Object[] newArray = new Object[array.length - 1];
+        int nodeIndex = nodeArrayIndex(bit);
+        // Child nodes are in reverse bitmap order from the end, so the new child goes after those that follow it
+        System.arraycopy(array, 0, newArray, 0, i);
+        System.arraycopy(array, i + 2, newArray, i, nodeIndex - 1 - i);
+        newArray[nodeIndex - 1] = child;
+        System.arraycopy(array, nodeIndex + 1, newArray, nodeIndex, array.length - nodeIndex - 1);
+        return new BitmapNode(dataMap ^ bit, nodeMap | bit, newArray);
+      }
+      if ((nodeMap & bit) != 0) {
+        int nodeIndex = nodeArrayIndex(bit);
+        Node child = (Node) array[nodeIndex];
+        Node newChild = child.put(shift + BITS, hash, key, value, added);
+        if (newChild == child) {
+          return this;
+        }
+        Object[] newArray = array.clone();
+        newArray[nodeIndex] = newChild;
+        return new BitmapNode(dataMap, nodeMap, newArray);
+      }
+      // Insert a new pair
+      added[0]++;
+      int i = dataIndex(bit) * 2;
+      Object[] newArray = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, i);
+      newArray[i] = key;
+      newArray[i + 1] = value;
+      System.arraycopy(array, i, newArray, i + 2, array.length - i);
+      return new BitmapNode(dataMap | bit, nodeMap, newArray);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int bit = bit(shift, hash);
+      if ((dataMap & bit) != 0) {
+        int i = dataIndex(bit) * 2;
+        if (!key.equals(array[i])) {
+          return this;
+        }
+        if (array.length == 2) {
+          return null;
+        }
+        Object[] newArray = new Object[array.length - 2];
+        System.arraycopy(array, 0, newArray, 0, i);
+        System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+        return new BitmapNode(dataMap ^ bit, nodeMap, newArray);
+      }
+      if ((nodeMap & bit) != 0) {
+        int nodeIndex = nodeArrayIndex(bit);
+        Node child = (Node) array[nodeIndex];
+        Node newChild = child.remove(shift + BITS, hash, key);
+        if (newChild == child) {
+          return this;
+        }
+        if (newChild == null) {
+          if (array.length == 1) {
+            return null;
+          }
+          Object[] newArray = new Object[array.length - 1];
+          System.arraycopy(array, 0, newArray, 0, nodeIndex);
+          System.arraycopy(array, nodeIndex + 1, newArray, nodeIndex, array.length - nodeIndex - 1);
+          return new BitmapNode(dataMap, nodeMap ^ bit, newArray);
+        }
+        if (newChild.nodeCount() == 0 && newChild.pairCount() == 1) {
+          // Inline the remaining pair of the child
+          Object[] newArray = new Object[array.length + 1];
+          int i = dataIndex(bit) * 2;
+          System.arraycopy(array, 0, newArray, 0, i);
+          newArray[i] = newChild.getKey(0);
+          newArray[i + 1] = newChild.getValue(0);
+          System.arraycopy(array, i, newArray, i + 2, nodeIndex - i);
+          System.arraycopy(array, nodeIndex + 1, newArray, nodeIndex + 2, array.length - nodeIndex - 1);
+          return new BitmapNode(dataMap | bit, nodeMap ^ bit, newArray);
+        }
+        Object[] newArray = array.clone();
+        newArray[nodeIndex] = newChild;
+        return new BitmapNode(dataMap, nodeMap, newArray);
+      }
+      return this;
+    }
+
+    @Override
+    int pairCount() {
+      return Integer.bitCount(dataMap);
+    }
+
+    @Override
+    int nodeCount() {
+      return Integer.bitCount(nodeMap);
+    }
+
+    @Override
+    Object getKey(int index) {
+      return array[index * 2];
+    }
+
+    @Override
+    Object getValue(int index) {
+      return array[index * 2 + 1];
+    }
+
+    @Override
+    Node getNode(int index) {
+      return (Node) array[array.length - 1 - index];
+    }
+  }
+
+  /**
+   * A node holding pairs whose keys have exactly the same hash.
+   */
+  private static final class CollisionNode extends Node {
+
+    private final int hash;
+    private final Object[] array;
+
+    private CollisionNode(int hash, Object[] array) {
+      this.hash = hash;
+      this.array = array;
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      int i = indexOf(key);
+      return i == -1 ? null : array[i + 1];
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, int[] added) {
+      if (hash != this.hash) {
+        // Nest this node below a new bitmap node
+        int bit = 1 << ((this.hash >>> shift) & MASK);
+        return new BitmapNode(0, bit, new Object[] {this}).put(shift, hash, key, value, added);
+      }
+      int i = indexOf(key);
+      if (i != -1) {
+        if (array[i + 1] == value) {
+          return this;
+        }
+        Object[] newArray = array.clone();
+        newArray[i + 1] = value;
+        return new CollisionNode(hash, newArray);
+      }
+      added[0]++;
+      Object[] newArray = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, array.length);
+      newArray[array.length] = key;
+      newArray[array.length + 1] = value;
+      return new CollisionNode(hash, newArray);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int i = indexOf(key);
+      if (i == -1) {
+        return this;
+      }
+      if (array.length == 2) {
+        return null;
+      }
+      Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, i);
+      System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+      return new CollisionNode(hash, newArray);
+    }
+
+    @Override
+    int pairCount() {
+      return array.length / 2;
+    }
+
+    @Override
+    int nodeCount() {
+      return 0;
+    }
+
+    @Override
+    Object getKey(int index) {
+      return array[index * 2];
+    }
+
+    @Override
+    Object getValue(int index) {
+      return array[index * 2 + 1];
+    }
+
+    @Override
+    Node getNode(int index) {
+      throw new IndexOutOfBoundsException();
+    }
+  }
+
+  /**
+   * Iterates all pairs, depth-first.
+   */
+  private abstract static class TrieIterator<K, V, T> implements Iterator<T> {
+
+    /**
+     * The maximum depth of the trie, plus one for collision nodes.
+     */
+    private static final int MAX_DEPTH = (32 + BITS - 1) / BITS + 1;
+
+    private final Node[] nodes = new Node[MAX_DEPTH];
+    private final int[] nodeCursors = new int[MAX_DEPTH];
+    private int depth = -1;
+    private Node pairNode;
+    private int pairCursor;
+    private int pairCount;
+
+    TrieIterator(Node root) {
+      if (root != null) {
+        push(root);
+      }
+    }
+
+    private void push(Node node) {
+      depth++;
+      nodes[depth] = node;
+      nodeCursors[depth] = 0;
+      pairNode = node;
+      pairCursor = 0;
+      pairCount = node.pairCount();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (pairCursor >= pairCount) {
+        if (depth < 0) {
+          return false;
+        }
+        Node node = nodes[depth];
+        if (nodeCursors[depth] < node.nodeCount()) {
+          push(node.getNode(nodeCursors[depth]++));
+        } else {
+          nodes[depth] = null;
+          depth--;
+          pairCount = 0;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int i = pairCursor++;
+      @SuppressWarnings("unchecked")
+      K key = (K) pairNode.getKey(i);
+      @SuppressWarnings("unchecked")
+      V value = (V) pairNode.getValue(i);
+      return next(key, value);
+    }
+
+    abstract T next(K key, V value);
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static final PersistentHashMap EMPTY = new PersistentHashMap(null, 0);
+
+  /**
+   * Gets the empty map.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentHashMap<K, V> empty() {
+    return EMPTY;
+  }
+
+  private final Node root;
+  private final int size;
+
+  private PersistentHashMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    if (root == null || key == null) {
+      return null;
+    }
+    return (V) root.find(0, hash(key), key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Gets a map with the given key associated with the given value.
+   *
+   * @return  the new map or {@code this} when the key is already associated with the same value instance
+   */
+  PersistentHashMap<K, V> plus(K key, V value) {
+    if (key == null || value == null) {
+      throw new IllegalArgumentException();
+    }
+    int[] added = new int[1];
+    Node newRoot = (root == null ? BitmapNode.EMPTY : root).put(0, hash(key), key, value, added);
+    return newRoot == root ? this : new PersistentHashMap<>(newRoot, size + added[0]);
+  }
+
+  /**
+   * Gets a map without the given key.
+   *
+   * @return  the new map or {@code this} when the key is not present
+   */
+  PersistentHashMap<K, V> minus(Object key) {
+    if (root == null || key == null) {
+      return this;
+    }
+    Node newRoot = root.remove(0, hash(key), key);
+    if (newRoot == root) {
+      return this;
+    }
+    return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+  }
+
+  /**
+   * Gets a map with all the pairs of another map added.  Both tries are walked together,
+   * descending only where they differ, and unchanged nodes are shared.
+   *
+   * @param  merger  combines the values when a key is in both maps, given the value
+   *                 of this map then the value of the other map.  Given the same value
+   *                 for both, it must return an equal value, since nodes shared by both
+   *                 maps are not visited.
+   *
+   * @return  the new map, {@code this} when unchanged, or {@code other} when this map is empty
+   */
+  PersistentHashMap<K, V> plusAll(PersistentHashMap<K, V> other, BinaryOperator<V> merger) {
+    if (other == this || other.root == null) {
+      return this;
+    }
+    if (root == null) {
+      return other;
+    }
+    int[] added = new int[1];
+    Node newRoot = plusAll(0, root, other.root, merger, added);
+    if (newRoot == root) {
+      return this;
+    }
+    if (newRoot == other.root) {
+      return other;
+    }
+    return new PersistentHashMap<>(newRoot, size + added[0]);
+  }
+
+  /**
+   * Counts the pairs of a node and its children.
+   */
+  private static int count(Node node) {
+    int count = node.pairCount();
+    for (int i = 0, nodeCount = node.nodeCount(); i < nodeCount; i++) {
+      count += count(node.getNode(i));
+    }
+    return count;
+  }
+
+  /**
+   * Merges two values of the same key, keeping the first when the merged value is equal.
+   */
+  @SuppressWarnings("unchecked")
+  private static <V> Object merge(Object value1, Object value2, BinaryOperator<V> merger) {
+    V merged = merger.apply((V) value1, (V) value2);
+    return merged == value1 || merged.equals(value1) ? value1 : merged;
+  }
+
+  /**
+   * Adds a pair into a node, with its value merged as the value of the given side.
+   *
+   * @param  first  when {@code true}, the pair is from the first map and the node from the second
+   * @param  added  incremented when the key is new
+   */
+  @SuppressWarnings("unchecked")
+  private static <V> Node plusPair(
+      int shift,
+      Node node,
+      Object key,
+      Object value,
+      boolean first,
+      BinaryOperator<V> merger,
+      int[] added
+  ) {
+    int hash = hash(key);
+    Object existing = node.find(shift, hash, key);
+    if (existing != null) {
+      V merged = first ? merger.apply((V) value, (V) existing) : merger.apply((V) existing, (V) value);
+      if (merged == existing || merged.equals(existing)) {
+        // Keep the existing value, which avoids copying the path
+        return node;
+      }
+      value = merged;
+    }
+    return node.put(shift, hash, key, value, added);
+  }
+
+  /**
+   * Adds the pairs of a node and its children into another, one at a time.
+   */
+  private static <V> Node plusPairs(int shift, Node node, Node additions, BinaryOperator<V> merger, int[] added) {
+    for (int i = 0, count = additions.pairCount(); i < count; i++) {
+      node = plusPair(shift, node, additions.getKey(i), additions.getValue(i), false, merger, added);
+    }
+    for (int i = 0, count = additions.nodeCount(); i < count; i++) {
+      node = plusPairs(shift, node, additions.getNode(i), merger, added);
+    }
+    return node;
+  }
+
+  /**
+   * Adds all pairs of a node into another, both at the given shift.
+   *
+   * @param  added  incremented for each key of {@code additions} not in {@code node}
+   */
+  private static <V> Node plusAll(int shift, Node node, Node additions, BinaryOperator<V> merger, int[] added) {
+    if (node == additions) {
+      return node;
+    }
+    // Collision nodes hold only a few pairs, so the pairs of additions are added one at a time
+    if (node instanceof CollisionNode || additions instanceof CollisionNode) {
+      return plusPairs(shift, node, additions, merger, added);
+    }
+    BitmapNode node1 = (BitmapNode) node;
+    BitmapNode node2 = (BitmapNode) additions;
+    int bitmap = node1.dataMap | node1.nodeMap | node2.dataMap | node2.nodeMap;
+    int slots = Integer.bitCount(bitmap);
+    Object[] pairs = new Object[slots * 2];
+    int pairCount = 0;
+    Node[] nodes = new Node[slots];
+    int nodeCount = 0;
+    int dataMap = 0;
+    int nodeMap = 0;
+    boolean same1 = true;
+    boolean same2 = true;
+    final int childShift = shift + BITS;
+    for (int remaining = bitmap; remaining != 0; remaining &= remaining - 1) {
+      int bit = remaining & -remaining;
+      if ((node1.dataMap & bit) != 0) {
+        int i = node1.dataIndex(bit) * 2;
+        Object key = node1.array[i];
+        Object value = node1.array[i + 1];
+        if ((node2.dataMap & bit) != 0) {
+          int j = node2.dataIndex(bit) * 2;
+          Object key2 = node2.array[j];
+          Object value2 = node2.array[j + 1];
+          if (key.equals(key2)) {
+            Object merged = merge(value, value2, merger);
+            same1 &= merged == value;
+            same2 &= key == key2 && merged == value2;
+            dataMap |= bit;
+            pairs[pairCount++] = key;
+            pairs[pairCount++] = merged;
+          } else {
+            added[0]++;
+            same1 = false;
+            same2 = false;
+            nodeMap |= bit;
+            nodes[nodeCount++] = createNode(childShift, key, value, hash(key2), key2, value2);
+          }
+        } else if ((node2.nodeMap & bit) != 0) {
+          Node child2 = (Node) node2.array[node2.nodeArrayIndex(bit)];
+          int[] found = new int[1];
+          Node child = plusPair(childShift, child2, key, value, true, merger, found);
+          added[0] += count(child2) - (found[0] == 0 ? 1 : 0);
+          same1 = false;
+          same2 &= child == child2;
+          nodeMap |= bit;
+          nodes[nodeCount++] = child;
+        } else {
+          same2 = false;
+          dataMap |= bit;
+          pairs[pairCount++] = key;
+          pairs[pairCount++] = value;
+        }
+      } else if ((node1.nodeMap & bit) != 0) {
+        Node child1 = (Node) node1.array[node1.nodeArrayIndex(bit)];
+        Node child;
+        if ((node2.dataMap & bit) != 0) {
+          int j = node2.dataIndex(bit) * 2;
+          child = plusPair(childShift, child1, node2.array[j], node2.array[j + 1], false, merger, added);
+          same2 = false;
+        } else if ((node2.nodeMap & bit) != 0) {
+          Node child2 = (Node) node2.array[node2.nodeArrayIndex(bit)];
+          child = plusAll(childShift, child1, child2, merger, added);
+          same2 &= child == child2;
+        } else {
+          child = child1;
+          same2 = false;
+        }
+        same1 &= child == child1;
+        nodeMap |= bit;
+        nodes[nodeCount++] = child;
+      } else if ((node2.dataMap & bit) != 0) {
+        int j = node2.dataIndex(bit) * 2;
+        added[0]++;
+        same1 = false;
+        dataMap |= bit;
+        pairs[pairCount++] = node2.array[j];
+        pairs[pairCount++] = node2.array[j + 1];
+      } else {
+        Node child2 = (Node) node2.array[node2.nodeArrayIndex(bit)];
+        added[0] += count(child2);
+        same1 = false;
+        nodeMap |= bit;
+        nodes[nodeCount++] = child2;
+      }
+    }
+    if (same1) {
+      return node1;
+    }
+    if (same2) {
+      return node2;
+    }
+    // Pairs from the start, child nodes in reverse bitmap order from the end
+    Object[] array = new Object[pairCount + nodeCount];
+    System.arraycopy(pairs, 0, array, 0, pairCount);
+    for (int i = 0; i < nodeCount; i++) {
+      array[array.length - 1 - i] = nodes[i];
+    }
+    return new BitmapNode(dataMap, nodeMap, array);
+  }
+
+  /**
+   * Iterates the keys without allocating entries.
+   */
+  Iterator<K> keyIterator() {
+    return new TrieIterator<K, V, K>(root) {
+      @Override
+      K next(K key, V value) {
+        return key;
+      }
+    };
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<Map.Entry<K, V>>() {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new TrieIterator<K, V, Map.Entry<K, V>>(root) {
+          @Override
+          Map.Entry<K, V> next(K key, V value) {
+            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+/**
+ * An immutable set built on {@link PersistentHashMap}.  Changes return a new set
+ * that shares all unchanged nodes with the original.
+ *
+ * <p>Elements may not be {@code null}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PersistentHashSet<E> extends AbstractSet<E> {
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static final PersistentHashSet EMPTY = new PersistentHashSet(PersistentHashMap.empty());
+
+  /**
+   * Gets the empty set.
+   */
+  @SuppressWarnings("unchecked")
+  static <E> PersistentHashSet<E> empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Each element is mapped to itself.
+   */
+  private final PersistentHashMap<E, E> map;
+
+  private PersistentHashSet(PersistentHashMap<E, E> map) {
+    this.map = map;
+  }
+
+  @Override
+  public int size() {
+    return map.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return map.containsKey(o);
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return map.keyIterator();
+  }
+
+  /**
+   * Gets a set with the given element added.
+   *
+   * @return  the new set or {@code this} when already present
+   */
+  PersistentHashSet<E> plus(E element) {
+    if (map.containsKey(element)) {
+      return this;
+    }
+    return new PersistentHashSet<>(map.plus(element, element));
+  }
+
+  /**
+   * Gets a set without the given element.
+   *
+   * @return  the new set, {@code this} when not present, or the empty set when the last element is removed
+   */
+  PersistentHashSet<E> minus(Object element) {
+    PersistentHashMap<E, E> newMap = map.minus(element);
+    if (newMap == map) {
+      return this;
+    }
+    return newMap.isEmpty() ? empty() : new PersistentHashSet<>(newMap);
+  }
+
+  /**
+   * Gets a set with all the elements of another set added.  Unchanged nodes are shared.
+   *
+   * @return  the new set, {@code this} when unchanged, or {@code other} when it already contains all of this set
+   */
+  PersistentHashSet<E> plusAll(PersistentHashSet<E> other) {
+    PersistentHashMap<E, E> newMap = map.plusAll(other.map, (e1, e2) -> e1);
+    if (newMap == map) {
+      return this;
+    }
+    return newMap == other.map ? other : new PersistentHashSet<>(newMap);
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-web-resources-registry - Central registry for web resource management.
- * Copyright (C) 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -25,9 +25,18 @@ package com.aoapps.web.resources.registry;
 
 import com.aoapps.lang.Iterables;
 import com.aoapps.lang.NullArgumentException;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -43,28 +52,325 @@ public class Registry implements Serializable {
 
   private static final long serialVersionUID = 1L;
 
-  private final ConcurrentMap<Group.Name, Group> groups = new ConcurrentHashMap<>();
+  /**
+   * The registered baselines, by id.
+   *
+   * @see  #registerBaseline(java.lang.String)
+   */
+  private static final ConcurrentMap<String, Registry> baselines = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<Group.Name, Group> groups;
+
+  private final Map<Group.Name, Boolean> activations;
+
+  /**
+   * The activations as bitsets, indexed by {@linkplain Group.Name#getId() group name id}.
+   * Instances are immutable and replaced on each change.
+   */
+  static final class ActivationBits {
+
+    private static final long[] EMPTY_BITS = new long[0];
+
+    static final ActivationBits EMPTY = new ActivationBits(EMPTY_BITS, EMPTY_BITS);
+
+    /**
+     * The groups activated by the registry.
+     */
+    final long[] activated;
+
+    /**
+     * The groups deactivated by the registry.
+     */
+    final long[] deactivated;
 
-  private final Map<Group.Name, Boolean> activations = new ConcurrentHashMap<>();
+    private ActivationBits(long[] activated, long[] deactivated) {
+      this.activated = activated;
+      this.deactivated = deactivated;
+    }
+
+    private static long[] withBit(long[] bits, int id, boolean set) {
+      int word = id >>> 6;
+      long mask = 1L << id;
+      if (word >= bits.length) {
+        if (!set) {
+          return bits;
+        }
+        bits = Arrays.copyOf(bits, word + 1);
+      } else if (((bits[word] & mask) != 0) == set) {
+        return bits;
+      } else {
+        bits = bits.clone();
+      }
+      if (set) {
+        bits[word] |= mask;
+      } else {
+        bits[word] &= ~mask;
+      }
+      return bits;
+    }
+
+    private ActivationBits with(int id, Boolean activation) {
+      return new ActivationBits(
+          withBit(activated, id, Boolean.TRUE.equals(activation)),
+          withBit(deactivated, id, Boolean.FALSE.equals(activation))
+      );
+    }
+
+    /**
+     * Applies these activations over the given active groups, as a registry
+     * of narrower scope.
+     *
+     * @param  active  The active groups, which is not modified
+     *
+     * @return  The new active groups
+     */
+    long[] applyTo(long[] active) {
+      int length = Math.max(active.length, activated.length);
+      long[] result = Arrays.copyOf(active, length);
+      for (int i = Math.min(active.length, deactivated.length) - 1; i >= 0; i--) {
+        result[i] &= ~deactivated[i];
+      }
+      for (int i = activated.length - 1; i >= 0; i--) {
+        result[i] |= activated[i];
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The activations as bitsets, replaced while holding the lock on this registry.
+   */
+  private transient volatile ActivationBits activationBits = ActivationBits.EMPTY;
+
+  /**
+   * The version of the activations, see {@link #getVersion()}.
+   */
+  private transient volatile long activationsVersion;
+
+  /**
+   * Set once {@linkplain #freeze() frozen}.
+   */
+  private transient volatile boolean frozen;
+
+  /**
+   * The id once {@linkplain #registerBaseline(java.lang.String) registered as a baseline}.
+   */
+  private transient volatile String baselineId;
+
+  /**
+   * The fingerprint of this registry, set before {@link #baselineId}.
+   */
+  private transient long baselineFingerprint;
+
+  /**
+   * The baseline this registry is a copy of, directly or through other copies,
+   * or {@code null} when not a copy of a baseline.
+   */
+  private final transient Registry baseline;
+
+  /**
+   * Counts the non-empty groups, along with the activations as one more member when not empty.
+   *
+   * @see  #isEmpty()
+   */
+  private transient NonEmptyCounter nonEmpty;
 
   public Registry() {
-    // Do nothing
+    groups = new ConcurrentHashMap<>();
+    activations = new ConcurrentHashMap<>();
+    baseline = null;
+    nonEmpty = new NonEmptyCounter();
   }
 
   /**
    * Copy constructor.
    */
   protected Registry(Registry other) {
-    groups.putAll(other.groups);
-    // Copy each
+    nonEmpty = new NonEmptyCounter();
+    groups = new ConcurrentHashMap<>(other.groups.size());
+    for (Map.Entry<Group.Name, Group> entry : other.groups.entrySet()) {
+      Group copy = entry.getValue().copy();
+      copy.setCounter(nonEmpty);
+      groups.put(entry.getKey(), copy);
+    }
+    synchronized (other) {
+      activations = new ConcurrentHashMap<>(other.activations);
+      activationBits = other.activationBits;
+      activationsVersion = other.activationsVersion;
+    }
+    if (!activations.isEmpty()) {
+      nonEmpty.changed(true);
+    }
+    baseline = other.baselineId != null ? other : other.baseline;
+  }
+
+  /**
+   * Uses the {@linkplain CompactForm compact form}, writing only the changes from the
+   * baseline when a copy of a registered baseline.
+   */
+  private Object writeReplace() {
+    Registry base = baseline;
+    return new CompactForm(
+        base != null && base.isRegisteredBaseline() ? CompactForm.REGISTRY_DELTA : CompactForm.REGISTRY,
+        this
+    );
+  }
+
+  /**
+   * Writes this registry in the {@linkplain CompactForm compact form}.
+   */
+  final void writeCompact(CompactForm.Output out) throws IOException {
+    List<Map.Entry<Group.Name, Group>> groupEntries = new ArrayList<>(groups.entrySet());
+    out.writeVarInt(groupEntries.size());
+    for (Map.Entry<Group.Name, Group> entry : groupEntries) {
+      out.writeString(entry.getKey().toString());
+      entry.getValue().writeCompact(out);
+    }
+    List<Map.Entry<Group.Name, Boolean>> activationEntries;
+    synchronized (this) {
+      activationEntries = new ArrayList<>(activations.entrySet());
+    }
+    out.writeVarInt(activationEntries.size());
+    for (Map.Entry<Group.Name, Boolean> entry : activationEntries) {
+      out.writeString(entry.getKey().toString());
+      out.writeVarInt(entry.getValue() ? 1 : 0);
+    }
+  }
+
+  private static Group.Name readName(CompactForm.Input in) throws IOException {
+    try {
+      return Group.Name.valueOf(in.readString());
+    } catch (IllegalArgumentException e) {
+      throw (InvalidObjectException) new InvalidObjectException(e.getMessage()).initCause(e);
+    }
+  }
+
+  /**
+   * Reads a registry from the {@linkplain CompactForm compact form}.
+   */
+  static Registry readCompact(CompactForm.Input in) throws IOException {
+    Registry registry = new Registry();
+    for (int i = in.readVarInt(); i > 0; i--) {
+      Group.Name name = readName(in);
+      Group group = Group.readCompact(in);
+      group.setCounter(registry.nonEmpty);
+      registry.groups.put(name, group);
+    }
+    for (int i = in.readVarInt(); i > 0; i--) {
+      Group.Name name = readName(in);
+      registry.setActivation(name, in.readVarInt() != 0);
+    }
+    return registry;
+  }
+
+  /**
+   * Writes the changes of this registry from its baseline in the {@linkplain CompactForm compact form}:
+   * the id and fingerprint of the baseline, the groups that are not the same as in the baseline, and
+   * the activations that differ from the baseline.
+   */
+  final void writeCompactDelta(CompactForm.Output out) throws IOException {
+    Registry base = baseline;
+    out.writeString(base.baselineId);
+    out.writeLong(base.baselineFingerprint);
+    List<Map.Entry<Group.Name, Group>> changedGroups = new ArrayList<>();
     for (Map.Entry<Group.Name, Group> entry : groups.entrySet()) {
-      entry.setValue(entry.getValue().copy());
+      Group baseGroup = base.groups.get(entry.getKey());
+      if (baseGroup == null || !entry.getValue().isSameState(baseGroup)) {
+        changedGroups.add(entry);
+      }
+    }
+    out.writeVarInt(changedGroups.size());
+    for (Map.Entry<Group.Name, Group> entry : changedGroups) {
+      Group.Name name = entry.getKey();
+      Group baseGroup = base.groups.get(name);
+      out.writeString(name.toString());
+      entry.getValue().writeCompactDelta(out, baseGroup == null ? new Group() : baseGroup);
+    }
+    Map<Group.Name, Boolean> activationsCopy;
+    synchronized (this) {
+      activationsCopy = new HashMap<>(activations);
+    }
+    Map<Group.Name, Boolean> changedActivations = new HashMap<>();
+    for (Map.Entry<Group.Name, Boolean> entry : activationsCopy.entrySet()) {
+      if (!entry.getValue().equals(base.activations.get(entry.getKey()))) {
+        changedActivations.put(entry.getKey(), entry.getValue());
+      }
+    }
+    for (Group.Name name : base.activations.keySet()) {
+      if (!activationsCopy.containsKey(name)) {
+        changedActivations.put(name, null);
+      }
+    }
+    out.writeVarInt(changedActivations.size());
+    for (Map.Entry<Group.Name, Boolean> entry : changedActivations.entrySet()) {
+      Boolean activation = entry.getValue();
+      out.writeString(entry.getKey().toString());
+      out.writeVarInt(activation == null ? 2 : activation ? 1 : 0);
+    }
+  }
+
+  /**
+   * Reads a registry from the {@linkplain CompactForm compact form} by applying its changes to a
+   * copy of the local baseline with the same id.
+   *
+   * @throws  InvalidObjectException  when no baseline is registered for the id or it does not match
+   *                                  the baseline the registry was written against
+   */
+  static Registry readCompactDelta(CompactForm.Input in) throws IOException {
+    String id = in.readString();
+    long fingerprint = in.readLong();
+    Registry base = baselines.get(id);
+    if (base == null) {
+      throw new InvalidObjectException("Baseline not registered: " + id);
+    }
+    if (base.baselineFingerprint != fingerprint) {
+      throw new InvalidObjectException("Baseline does not match: " + id);
+    }
+    Registry registry = base.copy();
+    for (int i = in.readVarInt(); i > 0; i--) {
+      Group.Name name = readName(in);
+      registry.getGroup(name).readCompactDelta(in);
+    }
+    for (int i = in.readVarInt(); i > 0; i--) {
+      Group.Name name = readName(in);
+      int activation = in.readVarInt();
+      if (activation > 2) {
+        throw new InvalidObjectException("Unexpected activation: " + activation);
+      }
+      registry.setActivation(name, activation == 2 ? null : activation == 1);
+    }
+    return registry;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    nonEmpty = new NonEmptyCounter();
+    for (Group group : groups.values()) {
+      group.setCounter(nonEmpty);
+    }
+    if (!activations.isEmpty()) {
+      nonEmpty.changed(true);
+    }
+    ActivationBits bits = ActivationBits.EMPTY;
+    for (Map.Entry<Group.Name, Boolean> entry : activations.entrySet()) {
+      bits = bits.with(entry.getKey().getId(), entry.getValue());
+    }
+    activationBits = bits;
+    if (!activations.isEmpty()) {
+      activationsVersion = Resources.nextVersion();
     }
-    activations.putAll(other.activations);
   }
 
   /**
-   * Gets a deep copy of this registry.
+   * Gets a copy of this registry.
+   *
+   * <p>Each group is copied, but shares the immutable state of its resources with
+   * the original group.  Resources are cloned individually on their first change,
+   * so a copy that only adds a few resources does not duplicate the rest of the
+   * registry.</p>
+   *
+   * <p>The copy of a {@linkplain #freeze() frozen} registry is not frozen, but
+   * shares the sorts performed while freezing.</p>
    */
   public Registry copy() {
     return new Registry(this);
@@ -123,6 +429,9 @@ public class Registry implements Serializable {
    *
    * @param  createIfMissing  When {@code true}, will create the group if missing
    *
+   * <p>When {@linkplain #freeze() frozen}, a missing group is created empty and
+   * frozen, but is not added to this registry.</p>
+   *
    * @return  The group or {@code null} when the group does not exist and {@code createIfMissing} is {@code false}.
    */
   public Group getGroup(Group.Name name, boolean createIfMissing) {
@@ -131,10 +440,17 @@ public class Registry implements Serializable {
     }
     Group group = groups.get(name);
     if (group == null && createIfMissing) {
-      group = new Group();
-      Group existing = groups.putIfAbsent(name, group);
-      if (existing != null) {
-        group = existing;
+      // Locking orders the creation of the group with freeze()
+      synchronized (this) {
+        group = groups.get(name);
+        if (group == null) {
+          if (frozen) {
+            return new Group().freeze();
+          }
+          group = new Group();
+          group.setCounter(nonEmpty);
+          groups.put(name, group);
+        }
       }
     }
     return group;
@@ -150,7 +466,7 @@ public class Registry implements Serializable {
    * @throws  IllegalArgumentException  See {@link Group.Name#checkName(java.lang.String)}.
    */
   public Group getGroup(String name, boolean createIfMissing) throws IllegalArgumentException {
-    return getGroup(new Group.Name(name), createIfMissing);
+    return getGroup(Group.Name.valueOf(name), createIfMissing);
   }
 
   /**
@@ -166,7 +482,7 @@ public class Registry implements Serializable {
    * @throws  IllegalArgumentException  See {@link Group.Name#checkName(java.lang.String)}.
    */
   public Group getGroup(String name) throws IllegalArgumentException {
-    return getGroup(new Group.Name(name), true);
+    return getGroup(Group.Name.valueOf(name), true);
   }
 
   /**
@@ -201,18 +517,48 @@ public class Registry implements Serializable {
    * @param  activation  When {@code null}, the activation is removed.
    *
    * @return  The previous activation value for the group
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
    */
-  public Boolean setActivation(Group.Name group, Boolean activation) {
+  public Boolean setActivation(Group.Name group, Boolean activation) throws IllegalStateException {
     if (group == null) {
       throw new NullArgumentException("group");
     }
-    if (activation == null) {
-      return activations.remove(group);
-    } else {
-      return activations.put(group, activation);
+    // Locking keeps the bitsets consistent with the map and the version increasing
+    synchronized (this) {
+      if (frozen) {
+        throw new IllegalStateException("Registry is frozen");
+      }
+      Boolean previous;
+      if (activation == null) {
+        previous = activations.remove(group);
+      } else {
+        previous = activations.put(group, activation);
+      }
+      if (!Objects.equals(activation, previous)) {
+        activationBits = activationBits.with(group.getId(), activation);
+        activationsVersion = Resources.nextVersion();
+        if (previous == null) {
+          if (activations.size() == 1) {
+            nonEmpty.changed(true);
+          }
+        } else if (activation == null && activations.isEmpty()) {
+          nonEmpty.changed(false);
+        }
+      }
+      return previous;
     }
   }
 
+  /**
+   * Gets the activations as bitsets.
+   *
+   * <p>This does not lock.</p>
+   */
+  ActivationBits getActivationBits() {
+    return activationBits;
+  }
+
   /**
    * Activates the given group.
    */
@@ -227,7 +573,7 @@ public class Registry implements Serializable {
    * @throws  IllegalArgumentException  See {@link Group.Name#checkName(java.lang.String)}.
    */
   public Registry activate(String group) throws IllegalArgumentException {
-    setActivation(new Group.Name(group), true);
+    setActivation(Group.Name.valueOf(group), true);
     return this;
   }
 
@@ -305,7 +651,7 @@ public class Registry implements Serializable {
    * @throws  IllegalArgumentException  See {@link Group.Name#checkName(java.lang.String)}.
    */
   public Registry deactivate(String group) throws IllegalArgumentException {
-    setActivation(new Group.Name(group), false);
+    setActivation(Group.Name.valueOf(group), false);
     return this;
   }
 
@@ -370,19 +716,156 @@ public class Registry implements Serializable {
   }
 
   /**
-   * Empty when there are no activations and all groups are empty.
+   * Freezes this registry, after which its activations and the resources of all
+   * its groups may no longer be changed.  This is intended for registries that
+   * are built once, such as the application-scope registry.
    *
-   * @see  Group#isEmpty()
+   * <p>The resources of all groups are sorted first, so nothing is frozen when
+   * any ordering constraint is invalid.  Afterwards, {@link Resources#getSorted()}
+   * returns precomputed, array-backed sets without locking.</p>
+   *
+   * <p>Freezing is not serialized.</p>
+   *
+   * @return  {@code this}
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   *
+   * @see  Group#freeze()
    */
-  public boolean isEmpty() {
-    if (!activations.isEmpty()) {
-      return false;
+  public synchronized Registry freeze() throws IllegalStateException {
+    for (Group group : groups.values()) {
+      group.validate();
     }
+    frozen = true;
     for (Group group : groups.values()) {
-      if (!group.isEmpty()) {
-        return false;
+      group.freeze();
+    }
+    return this;
+  }
+
+  /**
+   * Checks if this registry is {@linkplain #freeze() frozen}.
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Gets a fingerprint of the group names, styles, scripts, ordering constraints, and activations
+   * that is consistent between JVMs.
+   *
+   * @see  Group#fingerprint()
+   */
+  private long fingerprint() {
+    long fingerprint = 0;
+    for (Map.Entry<Group.Name, Group> entry : new TreeMap<>(groups).entrySet()) {
+      fingerprint = fingerprint * 31 + entry.getKey().toString().hashCode();
+      fingerprint = fingerprint * 31 + entry.getValue().fingerprint();
+    }
+    for (Map.Entry<Group.Name, Boolean> entry : new TreeMap<>(activations).entrySet()) {
+      fingerprint = fingerprint * 31 + entry.getKey().toString().hashCode();
+      fingerprint = fingerprint * 31 + (entry.getValue() ? 1 : 2);
+    }
+    return fingerprint;
+  }
+
+  /**
+   * {@linkplain #freeze() Freezes} this registry and registers it as the baseline for the given id,
+   * replacing any previous baseline for the id.
+   *
+   * <p>A copy of a baseline, including a copy of a copy, is serialized as only its changes from the
+   * baseline.  This is much smaller for registries that are mostly a copy of an application-scope
+   * registry, such as those stored in sessions.</p>
+   *
+   * <p>On deserialization, the changes are applied to a copy of the baseline registered for the same
+   * id, so each JVM must register an equivalent baseline first.  A fingerprint of the group names, styles,
+   * scripts, ordering constraints, and activations of the baseline is included, and deserialization fails
+   * with {@link InvalidObjectException} when the local baseline is missing or does not match.  Resources
+   * other than styles and scripts are not part of the fingerprint, and are written in full when changed.</p>
+   *
+   * <p>A copy is serialized in full once its baseline is no longer registered.</p>
+   *
+   * @return  {@code this}
+   *
+   * @throws  IllegalStateException  when a required resource is missing, the ordering constraints contain a cycle,
+   *                                 or this registry is already registered for a different id
+   *
+   * @see  #getBaseline(java.lang.String)
+   * @see  #unregisterBaseline()
+   */
+  public Registry registerBaseline(String id) throws IllegalStateException {
+    if (id == null) {
+      throw new NullArgumentException("id");
+    }
+    freeze();
+    synchronized (this) {
+      String existing = baselineId;
+      if (existing == null) {
+        baselineFingerprint = fingerprint();
+        baselineId = id;
+      } else if (!existing.equals(id)) {
+        throw new IllegalStateException("Registry already registered as baseline: " + existing);
       }
     }
-    return true;
+    baselines.put(id, this);
+    return this;
+  }
+
+  /**
+   * Gets the baseline registered for the given id.
+   *
+   * @return  The baseline or {@code null} when none registered
+   *
+   * @see  #registerBaseline(java.lang.String)
+   */
+  public static Registry getBaseline(String id) {
+    return baselines.get(id);
+  }
+
+  /**
+   * Unregisters this registry as a baseline, if it is still the baseline registered for its id.
+   * Copies of this registry are then serialized in full.
+   *
+   * @return  {@code true} when unregistered
+   *
+   * @see  #registerBaseline(java.lang.String)
+   */
+  public boolean unregisterBaseline() {
+    String id = baselineId;
+    return id != null && baselines.remove(id, this);
+  }
+
+  private boolean isRegisteredBaseline() {
+    String id = baselineId;
+    return id != null && baselines.get(id) == this;
+  }
+
+  /**
+   * Gets the version of this registry, which is the greatest of the version of
+   * its activations and the {@linkplain Group#getVersion() versions} of its groups.
+   * Since versions are assigned from a single increasing counter, this changes
+   * whenever the activations or any resources of this registry change.  A copy
+   * has the same version until either is changed.
+   *
+   * <p>This does not lock.</p>
+   */
+  public long getVersion() {
+    long version = activationsVersion;
+    for (Group group : groups.values()) {
+      version = Math.max(version, group.getVersion());
+    }
+    return version;
+  }
+
+  /**
+   * Empty when there are no activations and all groups are empty.
+   *
+   * <p>This does not lock, reading a count of the non-empty groups and activations that
+   * is maintained as they change.</p>
+   *
+   * @see  Group#isEmpty()
+   */
+  public boolean isEmpty() {
+    return nonEmpty.isEmpty();
   }
 }
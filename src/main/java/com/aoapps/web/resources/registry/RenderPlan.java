@@ -0,0 +1,438 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import com.aoapps.collections.AoCollections;
+import com.aoapps.lang.NullArgumentException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The active, sorted styles and scripts of a stack of registries, such as the
+ * application, theme, view, page, and request scopes.
+ *
+ * <p>Activations are applied in the order of the registries, so a later registry
+ * overrides the activation of a group by an earlier registry.  Groups are inactive
+ * by default.  Each registry keeps its activations as bitsets indexed by group name,
+ * so this is a few word-wide operations per registry.  The resources of each active group are combined from all of the
+ * registries, then sorted.</p>
+ *
+ * <p>Plans are immutable and are shared by all stacks of the same registries at the
+ * same {@linkplain Registry#getVersion() versions}.</p>
+ *
+ * <p>The markup of a plan, as rendered by the most recently used {@link HtmlRenderer}, is encoded
+ * as UTF-8 once and cached, so it may be written as bytes without encoding per request.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class RenderPlan {
+
+  /**
+   * Identifies a stack of registries by identity and version.  The registries are
+   * weakly referenced so cached plans do not retain request-scope registries.
+   */
+  private static final class Key {
+
+    private final WeakReference<?>[] registries;
+    private final long[] versions;
+    private final int hash;
+
+    private Key(List<Registry> registries, long[] versions) {
+      int size = registries.size();
+      this.registries = new WeakReference<?>[size];
+      int h = Arrays.hashCode(versions);
+      for (int i = 0; i < size; i++) {
+        Registry registry = registries.get(i);
+        this.registries[i] = new WeakReference<>(registry);
+        h = h * 31 + System.identityHashCode(registry);
+      }
+      this.versions = versions;
+      this.hash = h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      if (hash != other.hash || !Arrays.equals(versions, other.versions)) {
+        return false;
+      }
+      for (int i = 0; i < registries.length; i++) {
+        Object registry = registries[i].get();
+        if (registry == null || registry != other.registries[i].get()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * The maximum number of plans retained.
+   */
+  private static final int CACHE_SIZE = 64;
+
+  /**
+   * The most recently used plans.
+   */
+  private static final Map<Key, RenderPlan> cache = new LinkedHashMap<Key, RenderPlan>(
+      CACHE_SIZE * 4 / 3 + 1, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, RenderPlan> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /**
+   * Gets the plan for a stack of registries.
+   *
+   * @param  registries  The registries, from the broadest scope to the narrowest.  Empty
+   *                     registries, which neither activate nor contain anything, are skipped.
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   */
+  public static RenderPlan of(Iterable<? extends Registry> registries) throws IllegalStateException {
+    if (registries == null) {
+      throw new NullArgumentException("registries");
+    }
+    List<Registry> scopes = new ArrayList<>();
+    for (Registry registry : registries) {
+      if (registry != null && !registry.isEmpty()) {
+        scopes.add(registry);
+      }
+    }
+    // Versions are taken first, so a plan is never older than the versions it is cached by
+    long[] versions = new long[scopes.size()];
+    for (int i = 0; i < versions.length; i++) {
+      versions[i] = scopes.get(i).getVersion();
+    }
+    Key key = new Key(scopes, versions);
+    RenderPlan plan;
+    synchronized (cache) {
+      plan = cache.get(key);
+    }
+    if (plan == null) {
+      plan = new RenderPlan(scopes);
+      synchronized (cache) {
+        cache.put(key, plan);
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * Gets the plan for a stack of registries.
+   *
+   * @param  registries  The registries, from the broadest scope to the narrowest.  Empty
+   *                     registries, which neither activate nor contain anything, are skipped.
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   */
+  public static RenderPlan of(Registry ... registries) throws IllegalStateException {
+    if (registries == null) {
+      throw new NullArgumentException("registries");
+    }
+    return of(Arrays.asList(registries));
+  }
+
+  private final Set<Group.Name> activeGroups;
+  private final Styles styles;
+  private final Scripts scripts;
+
+  private static final Style.Direction[] directions = Style.Direction.values();
+  private static final Script.Position[] positions = Script.Position.values();
+
+  /**
+   * The index of the markup of all styles, followed by the markup of the styles of each direction.
+   */
+  private static final int STYLES = 0;
+
+  /**
+   * The index of the markup of all scripts, followed by the markup of the scripts of each position.
+   */
+  private static final int SCRIPTS = STYLES + 1 + directions.length;
+
+  private static final int RENDERINGS = SCRIPTS + 1 + positions.length;
+
+  /**
+   * The UTF-8 encoded markup of a single renderer.
+   */
+  private static final class Rendering {
+
+    private final HtmlRenderer renderer;
+    private final AtomicReferenceArray<byte[]> utf8s = new AtomicReferenceArray<>(RENDERINGS);
+
+    private Rendering(HtmlRenderer renderer) {
+      this.renderer = renderer;
+    }
+  }
+
+  /**
+   * The UTF-8 encoded markup of the most recently used renderer, created on first use.
+   * Only one renderer is retained, so the cache does not grow with the number of
+   * distinct context paths.
+   */
+  private volatile Rendering rendering;
+
+  private RenderPlan(List<Registry> scopes) throws IllegalStateException {
+    // Later registries override the activations of earlier
+    long[] activeBits = new long[0];
+    for (Registry scope : scopes) {
+      activeBits = scope.getActivationBits().applyTo(activeBits);
+    }
+    List<Group.Name> active = new ArrayList<>();
+    for (int word = 0; word < activeBits.length; word++) {
+      long bits = activeBits[word];
+      while (bits != 0) {
+        active.add(Group.Name.valueOf((word << 6) + Long.numberOfTrailingZeros(bits)));
+        bits &= bits - 1;
+      }
+    }
+    Collections.sort(active);
+    List<Styles> allStyles = new ArrayList<>();
+    List<Scripts> allScripts = new ArrayList<>();
+    for (Group.Name name : active) {
+      for (Registry scope : scopes) {
+        Group group = scope.getGroup(name, false);
+        if (group != null) {
+          allStyles.add(group.styles);
+          allScripts.add(group.scripts);
+        }
+      }
+    }
+    activeGroups = AoCollections.optimalUnmodifiableSet(new LinkedHashSet<>(active));
+    styles = Styles.union(allStyles).freeze();
+    scripts = Scripts.union(allScripts).freeze();
+  }
+
+  /**
+   * Gets the names of the active groups.
+   *
+   * @return  An unmodifiable set, in name order.
+   */
+  public Set<Group.Name> getActiveGroups() {
+    return activeGroups;
+  }
+
+  /**
+   * Gets the styles of all active groups, in sorted order.
+   *
+   * @see  Styles#getSorted()
+   */
+  public Set<Style> getStyles() {
+    return styles.getSorted();
+  }
+
+  /**
+   * Gets the styles of all active groups for a given direction, in sorted order.
+   *
+   * @see  Styles#getSorted(com.aoapps.web.resources.registry.Style.Direction)
+   */
+  public Set<Style> getStyles(Style.Direction direction) {
+    return styles.getSorted(direction);
+  }
+
+  /**
+   * Gets the scripts of all active groups, in sorted order.
+   *
+   * @see  Scripts#getSorted()
+   */
+  public Set<Script> getScripts() {
+    return scripts.getSorted();
+  }
+
+  /**
+   * Gets the scripts of all active groups for a given position, in sorted order.
+   *
+   * @see  Scripts#getSorted(com.aoapps.web.resources.registry.Script.Position)
+   */
+  public Set<Script> getScripts(Script.Position position) {
+    return scripts.getSorted(position);
+  }
+
+  /**
+   * Gets the UTF-8 encoded markup for the given index, rendering and encoding on first use.
+   */
+  private byte[] getUtf8(HtmlRenderer renderer, int index) {
+    if (renderer == null) {
+      throw new NullArgumentException("renderer");
+    }
+    Rendering r = rendering;
+    if (r == null || !r.renderer.equals(renderer)) {
+      r = new Rendering(renderer);
+      rendering = r;
+    }
+    AtomicReferenceArray<byte[]> utf8s = r.utf8s;
+    byte[] utf8 = utf8s.get(index);
+    if (utf8 == null) {
+      StringBuilder html = new StringBuilder();
+      try {
+        if (index < SCRIPTS) {
+          renderer.appendStyles(index == STYLES ? getStyles() : getStyles(directions[index - STYLES - 1]), html);
+        } else {
+          renderer.appendScripts(index == SCRIPTS ? getScripts() : getScripts(positions[index - SCRIPTS - 1]), html);
+        }
+      } catch (IOException e) {
+        throw new AssertionError("StringBuilder does not throw IOException", e);
+      }
+      utf8 = html.toString().getBytes(StandardCharsets.UTF_8);
+      // Races are benign since the same markup is always rendered
+      utf8s.set(index, utf8);
+    }
+    return utf8;
+  }
+
+  private static int getIndex(Style.Direction direction) {
+    if (direction == null) {
+      throw new NullArgumentException("direction");
+    }
+    return STYLES + 1 + direction.ordinal();
+  }
+
+  private static int getIndex(Script.Position position) {
+    if (position == null) {
+      throw new NullArgumentException("position");
+    }
+    return SCRIPTS + 1 + position.ordinal();
+  }
+
+  /**
+   * Gets the markup of the styles of all active groups, encoded as UTF-8.
+   *
+   * @return  A new read-only buffer over the cached markup, suitable for
+   *          {@link java.nio.channels.WritableByteChannel#write(java.nio.ByteBuffer)}.
+   *
+   * @see  #getStyles()
+   * @see  HtmlRenderer#appendStyles(java.lang.Iterable, java.lang.Appendable)
+   */
+  public ByteBuffer getStylesUtf8(HtmlRenderer renderer) {
+    return ByteBuffer.wrap(getUtf8(renderer, STYLES)).asReadOnlyBuffer();
+  }
+
+  /**
+   * Gets the markup of the styles of all active groups for a given direction, encoded as UTF-8.
+   *
+   * @return  A new read-only buffer over the cached markup, suitable for
+   *          {@link java.nio.channels.WritableByteChannel#write(java.nio.ByteBuffer)}.
+   *
+   * @see  #getStyles(com.aoapps.web.resources.registry.Style.Direction)
+   * @see  HtmlRenderer#appendStyles(java.lang.Iterable, java.lang.Appendable)
+   */
+  public ByteBuffer getStylesUtf8(HtmlRenderer renderer, Style.Direction direction) {
+    return ByteBuffer.wrap(getUtf8(renderer, getIndex(direction))).asReadOnlyBuffer();
+  }
+
+  /**
+   * Gets the markup of the scripts of all active groups, encoded as UTF-8.
+   *
+   * @return  A new read-only buffer over the cached markup, suitable for
+   *          {@link java.nio.channels.WritableByteChannel#write(java.nio.ByteBuffer)}.
+   *
+   * @see  #getScripts()
+   * @see  HtmlRenderer#appendScripts(java.lang.Iterable, java.lang.Appendable)
+   */
+  public ByteBuffer getScriptsUtf8(HtmlRenderer renderer) {
+    return ByteBuffer.wrap(getUtf8(renderer, SCRIPTS)).asReadOnlyBuffer();
+  }
+
+  /**
+   * Gets the markup of the scripts of all active groups for a given position, encoded as UTF-8.
+   *
+   * @return  A new read-only buffer over the cached markup, suitable for
+   *          {@link java.nio.channels.WritableByteChannel#write(java.nio.ByteBuffer)}.
+   *
+   * @see  #getScripts(com.aoapps.web.resources.registry.Script.Position)
+   * @see  HtmlRenderer#appendScripts(java.lang.Iterable, java.lang.Appendable)
+   */
+  public ByteBuffer getScriptsUtf8(HtmlRenderer renderer, Script.Position position) {
+    return ByteBuffer.wrap(getUtf8(renderer, getIndex(position))).asReadOnlyBuffer();
+  }
+
+  /**
+   * Writes the markup of the styles of all active groups, encoded as UTF-8.
+   *
+   * @see  #getStylesUtf8(com.aoapps.web.resources.registry.HtmlRenderer)
+   */
+  public void writeStyles(HtmlRenderer renderer, OutputStream out) throws IOException {
+    if (out == null) {
+      throw new NullArgumentException("out");
+    }
+    out.write(getUtf8(renderer, STYLES));
+  }
+
+  /**
+   * Writes the markup of the styles of all active groups for a given direction, encoded as UTF-8.
+   *
+   * @see  #getStylesUtf8(com.aoapps.web.resources.registry.HtmlRenderer, com.aoapps.web.resources.registry.Style.Direction)
+   */
+  public void writeStyles(HtmlRenderer renderer, Style.Direction direction, OutputStream out) throws IOException {
+    if (out == null) {
+      throw new NullArgumentException("out");
+    }
+    out.write(getUtf8(renderer, getIndex(direction)));
+  }
+
+  /**
+   * Writes the markup of the scripts of all active groups, encoded as UTF-8.
+   *
+   * @see  #getScriptsUtf8(com.aoapps.web.resources.registry.HtmlRenderer)
+   */
+  public void writeScripts(HtmlRenderer renderer, OutputStream out) throws IOException {
+    if (out == null) {
+      throw new NullArgumentException("out");
+    }
+    out.write(getUtf8(renderer, SCRIPTS));
+  }
+
+  /**
+   * Writes the markup of the scripts of all active groups for a given position, encoded as UTF-8.
+   *
+   * @see  #getScriptsUtf8(com.aoapps.web.resources.registry.HtmlRenderer, com.aoapps.web.resources.registry.Script.Position)
+   */
+  public void writeScripts(HtmlRenderer renderer, Script.Position position, OutputStream out) throws IOException {
+    if (out == null) {
+      throw new NullArgumentException("out");
+    }
+    out.write(getUtf8(renderer, getIndex(position)));
+  }
+}
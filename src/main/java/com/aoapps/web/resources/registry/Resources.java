@@ -1,6 +1,6 @@
 /*
  * ao-web-resources-registry - Central registry for web resource management.
- * Copyright (C) 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -24,26 +24,46 @@
 package com.aoapps.web.resources.registry;
 
 import com.aoapps.collections.AoCollections;
-import com.aoapps.hodgepodge.graph.Edge;
-import com.aoapps.hodgepodge.graph.SymmetricGraph;
-import com.aoapps.hodgepodge.graph.TopologicalSorter;
 import com.aoapps.lang.NullArgumentException;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A set of resources for a single class.
  *
+ * <p>The resources and ordering constraints are held in an immutable state that
+ * is replaced on each change.  Writers are serialized, while readers use the
+ * most recently published state without locking.</p>
+ *
+ * <p>The state is built on persistent hash tries, so each change only copies the
+ * path to the changed element, and copies and unions share structure.</p>
+ *
+ * <p>Ordering constraints are matched by {@linkplain Resource#getUri() URI}: each side
+ * of a constraint orders all the resources with its URI, regardless of their other
+ * attributes.  A constraint declared by URI alone, such as by
+ * {@link Scripts#addOrdering(boolean, java.lang.String, java.lang.String)}, applies to
+ * the resources as registered.  The resources are indexed by URI, so each side is
+ * found without a search.</p>
+ *
  * @author  AO Industries, Inc.
  */
 // TODO: When resources becomes empty, remove from Group (except Styles and Scripts)
@@ -53,7 +73,7 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
 
   private static final String EOL = System.lineSeparator();
 
-  private static class Before<R extends Resource<R> & Comparable<? super R>> implements Serializable {
+  static class Before<R extends Resource<R> & Comparable<? super R>> implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -68,6 +88,14 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
       this.required = required;
     }
 
+    R getBefore() {
+      return before;
+    }
+
+    boolean isRequired() {
+      return required;
+    }
+
     @Override
     public String toString() {
       return
@@ -96,111 +124,1100 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
     }
   }
 
+  /**
+   * The last version assigned to a state.
+   */
+  private static final AtomicLong lastVersion = new AtomicLong();
+
+  /**
+   * Gets the next version from the same counter as the states, so versions
+   * derived from resources and other changes may be compared.
+   *
+   * @see  Registry#getVersion()
+   */
+  static long nextVersion() {
+    return lastVersion.incrementAndGet();
+  }
+
+  /**
+   * The immutable state of these resources.
+   */
+  private static final class State<R extends Resource<R> & Comparable<? super R>> {
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final State EMPTY = new State(
+        PersistentHashSet.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        PersistentHashMap.empty(),
+        null,
+        0
+    );
+
+    @SuppressWarnings("unchecked")
+    private static <R extends Resource<R> & Comparable<? super R>> State<R> empty() {
+      return EMPTY;
+    }
+
+    /**
+     * The set of resources.
+     */
+    private final PersistentHashSet<R> resources;
+
+    /**
+     * Ordering map: <code>after -&gt; Set&lt;Before&gt;</code>.
+     * Each set of befores is never empty.
+     */
+    private final PersistentHashMap<R, PersistentHashSet<Before<R>>> ordering;
+
+    /**
+     * The resources, by {@linkplain #uriKey(com.aoapps.web.resources.registry.Resource) URI}.
+     */
+    private final PersistentHashMap<Object, PersistentHashSet<R>> resourcesByUri;
+
+    /**
+     * The after resources of {@link #ordering}, by {@linkplain #uriKey(com.aoapps.web.resources.registry.Resource) URI}.
+     */
+    private final PersistentHashMap<Object, PersistentHashSet<R>> aftersByUri;
+
+    /**
+     * The after resources of {@link #ordering}, by the {@linkplain #uriKey(com.aoapps.web.resources.registry.Resource) URI}
+     * of each of their befores.
+     */
+    private final PersistentHashMap<Object, PersistentHashSet<R>> aftersByBeforeUri;
+
+    /**
+     * The cached sort, which is maintained in-place for simple changes and
+     * {@code null} when a full sort is required.  Since it is derived only from
+     * the resources and ordering, it is set once sorted, while holding the lock
+     * on this state, and is then used by all that share this state.
+     */
+    private volatile TopologicalOrder<R> order;
+
+    /**
+     * Identifies this state, see {@link Resources#getVersion()}.
+     */
+    private final long version;
+
+    private State(
+        PersistentHashSet<R> resources,
+        PersistentHashMap<R, PersistentHashSet<Before<R>>> ordering,
+        PersistentHashMap<Object, PersistentHashSet<R>> resourcesByUri,
+        PersistentHashMap<Object, PersistentHashSet<R>> aftersByUri,
+        PersistentHashMap<Object, PersistentHashSet<R>> aftersByBeforeUri,
+        TopologicalOrder<R> order,
+        long version
+    ) {
+      this.resources = resources;
+      this.ordering = ordering;
+      this.resourcesByUri = resourcesByUri;
+      this.aftersByUri = aftersByUri;
+      this.aftersByBeforeUri = aftersByBeforeUri;
+      this.order = order;
+      this.version = version;
+    }
+
+    private State(
+        PersistentHashSet<R> resources,
+        PersistentHashMap<R, PersistentHashSet<Before<R>>> ordering,
+        PersistentHashMap<Object, PersistentHashSet<R>> resourcesByUri,
+        PersistentHashMap<Object, PersistentHashSet<R>> aftersByUri,
+        PersistentHashMap<Object, PersistentHashSet<R>> aftersByBeforeUri,
+        TopologicalOrder<R> order
+    ) {
+      this(resources, ordering, resourcesByUri, aftersByUri, aftersByBeforeUri, order, nextVersion());
+    }
+
+    /**
+     * Creates a new state, building the indexes by URI.
+     */
+    private static <R extends Resource<R> & Comparable<? super R>> State<R> indexed(
+        PersistentHashSet<R> resources,
+        PersistentHashMap<R, PersistentHashSet<Before<R>>> ordering
+    ) {
+      PersistentHashMap<Object, PersistentHashSet<R>> resourcesByUri = PersistentHashMap.empty();
+      for (R resource : resources) {
+        resourcesByUri = plusValue(resourcesByUri, uriKey(resource), resource);
+      }
+      PersistentHashMap<Object, PersistentHashSet<R>> aftersByUri = PersistentHashMap.empty();
+      PersistentHashMap<Object, PersistentHashSet<R>> aftersByBeforeUri = PersistentHashMap.empty();
+      for (Map.Entry<R, PersistentHashSet<Before<R>>> entry : ordering.entrySet()) {
+        R after = entry.getKey();
+        aftersByUri = plusValue(aftersByUri, uriKey(after), after);
+        for (Before<R> before : entry.getValue()) {
+          aftersByBeforeUri = plusValue(aftersByBeforeUri, uriKey(before.getBefore()), after);
+        }
+      }
+      return new State<>(resources, ordering, resourcesByUri, aftersByUri, aftersByBeforeUri, null);
+    }
+  }
+
+  /**
+   * Gets the key that ordering constraints are matched by, which is the {@linkplain Resource#getUri() URI},
+   * or the resource itself when it has no URI.
+   */
+  static Object uriKey(Resource<?> resource) {
+    String uri = resource.getUri();
+    return uri != null ? uri : resource;
+  }
+
+  /**
+   * Adds a value to the set for a key.
+   */
+  private static <V> PersistentHashMap<Object, PersistentHashSet<V>> plusValue(
+      PersistentHashMap<Object, PersistentHashSet<V>> map,
+      Object key,
+      V value
+  ) {
+    PersistentHashSet<V> values = map.get(key);
+    if (values == null) {
+      values = PersistentHashSet.empty();
+    }
+    PersistentHashSet<V> newValues = values.plus(value);
+    return newValues == values ? map : map.plus(key, newValues);
+  }
+
+  /**
+   * Removes a value from the set for a key, removing the key when its set becomes empty.
+   */
+  private static <V> PersistentHashMap<Object, PersistentHashSet<V>> minusValue(
+      PersistentHashMap<Object, PersistentHashSet<V>> map,
+      Object key,
+      V value
+  ) {
+    PersistentHashSet<V> values = map.get(key);
+    if (values == null) {
+      return map;
+    }
+    PersistentHashSet<V> newValues = values.minus(value);
+    if (newValues == values) {
+      return map;
+    }
+    return newValues.isEmpty() ? map.minus(key) : map.plus(key, newValues);
+  }
+
+  /**
+   * Identifies a union by the sorted versions of its inputs.
+   */
+  private static final class UnionKey {
+
+    private final long[] versions;
+    private final int hash;
+
+    private UnionKey(long[] versions) {
+      this.versions = versions;
+      this.hash = Arrays.hashCode(versions);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return
+          (obj instanceof UnionKey)
+              && Arrays.equals(versions, ((UnionKey) obj).versions);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * The maximum number of union results retained.
+   */
+  private static final int UNION_CACHE_SIZE = 64;
+
+  /**
+   * The most recently used union results.  Since a version identifies a single state,
+   * a result may be shared by any union of the same versions, regardless of which
+   * {@link Resources} the states are from.
+   */
+  private static final Map<UnionKey, State<?>> unionCache = new LinkedHashMap<UnionKey, State<?>>(
+      UNION_CACHE_SIZE * 4 / 3 + 1, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<UnionKey, State<?>> eldest) {
+      return size() > UNION_CACHE_SIZE;
+    }
+  };
+
   private static final long serialVersionUID = 1L;
 
-  private final Set<R> resources = new HashSet<>();
+  /**
+   * The serialized form matches the fields used before the introduction of {@link State}.
+   *
+   * @serialField  resources  Set  The set of resources
+   * @serialField  ordering   Map  Ordering map: <code>after -&gt; Set&lt;Before&gt;</code>
+   * @serialField  sorted     Set  Always {@code null}, the sort is performed after deserialization
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("resources", Set.class),
+      new ObjectStreamField("ordering", Map.class),
+      new ObjectStreamField("sorted", Set.class)
+  };
+
+  /**
+   * The current state, replaced while holding the lock on this object.
+   */
+  private transient volatile State<R> state;
 
   /**
-   * Ordering map: <code>after -&gt; Set&lt;Before&gt;</code>.
+   * The sorted resources once {@linkplain #freeze() frozen}, or {@code null} while not frozen.
    */
-  private final Map<R, Set<Before<R>>> ordering = new HashMap<>();
+  private transient volatile Set<R> frozen;
 
-  private Set<R> sorted;
+  /**
+   * Told each time these resources change between empty and non-empty, or {@code null} when none.
+   */
+  private transient volatile NonEmptyCounter counter;
 
   protected Resources() {
-    // Do nothing
+    state = State.empty();
   }
 
   /**
    * Copy constructor.
+   *
+   * <p>The immutable state is shared, including any cached sort.</p>
    */
   protected Resources(Resources<R> other) {
-    synchronized (other) {
-      resources.addAll(other.resources);
-      ordering.putAll(other.ordering);
-      // Copy each
-      for (Map.Entry<R, Set<Before<R>>> entry : ordering.entrySet()) {
-        entry.setValue(new HashSet<>(entry.getValue()));
-      }
-      sorted = other.sorted;
-    }
+    state = other.state;
   }
 
   /**
    * Union constructor.
+   *
+   * <p>Starts from the state with the most resources, sharing its structure,
+   * then adds the elements of the others.</p>
+   *
+   * <p>The result is cached by the {@linkplain #getVersion() versions} of the inputs,
+   * so repeated unions of unchanged resources share the same state, including its sort.</p>
    */
+  @SuppressWarnings("unchecked")
   protected Resources(Collection<? extends Resources<R>> others) {
     if (logger.isLoggable(Level.FINER)) {
       logger.finer("others: " + others);
     }
+    List<State<R>> states = new ArrayList<>(others.size());
+    long[] versions = new long[others.size()];
+    State<R> largest = null;
     for (Resources<R> other : others) {
-      synchronized (other) {
-        if (logger.isLoggable(Level.FINER)) {
-          logger.finer("addAll: " + other.resources);
+      State<R> otherState = other.state;
+      versions[states.size()] = otherState.version;
+      states.add(otherState);
+      if (largest == null || otherState.resources.size() > largest.resources.size()) {
+        largest = otherState;
+      }
+    }
+    Arrays.sort(versions);
+    UnionKey key = new UnionKey(versions);
+    State<R> cached;
+    synchronized (unionCache) {
+      cached = (State<R>) unionCache.get(key);
+    }
+    if (cached != null) {
+      state = cached;
+    } else if (largest == null) {
+      state = State.empty();
+    } else {
+      PersistentHashSet<R> resources = largest.resources;
+      PersistentHashMap<R, PersistentHashSet<Before<R>>> ordering = largest.ordering;
+      PersistentHashMap<Object, PersistentHashSet<R>> resourcesByUri = largest.resourcesByUri;
+      PersistentHashMap<Object, PersistentHashSet<R>> aftersByUri = largest.aftersByUri;
+      PersistentHashMap<Object, PersistentHashSet<R>> aftersByBeforeUri = largest.aftersByBeforeUri;
+      for (State<R> otherState : states) {
+        if (otherState != largest) {
+          if (logger.isLoggable(Level.FINER)) {
+            logger.finer("addAll: " + otherState.resources);
+          }
+          resources = resources.plusAll(otherState.resources);
+          ordering = ordering.plusAll(otherState.ordering, PersistentHashSet::plusAll);
+          resourcesByUri = resourcesByUri.plusAll(otherState.resourcesByUri, PersistentHashSet::plusAll);
+          aftersByUri = aftersByUri.plusAll(otherState.aftersByUri, PersistentHashSet::plusAll);
+          aftersByBeforeUri = aftersByBeforeUri.plusAll(otherState.aftersByBeforeUri, PersistentHashSet::plusAll);
+        }
+      }
+      State<R> union;
+      if (resources == largest.resources && ordering == largest.ordering) {
+        // Nothing added, share the state along with any cached sort
+        union = largest;
+      } else {
+        union = new State<>(resources, ordering, resourcesByUri, aftersByUri, aftersByBeforeUri, null);
+      }
+      synchronized (unionCache) {
+        unionCache.put(key, union);
+      }
+      state = union;
+    }
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    State<R> s = state;
+    Map<R, Set<Before<R>>> ordering = AoCollections.newHashMap(s.ordering.size());
+    for (Map.Entry<R, PersistentHashSet<Before<R>>> entry : s.ordering.entrySet()) {
+      ordering.put(entry.getKey(), new HashSet<>(entry.getValue()));
+    }
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("resources", new HashSet<>(s.resources));
+    fields.put("ordering", ordering);
+    fields.put("sorted", null);
+    out.writeFields();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    Set<R> resources = (Set<R>) fields.get("resources", null);
+    Map<R, Set<Before<R>>> ordering = (Map<R, Set<Before<R>>>) fields.get("ordering", null);
+    if (resources == null) {
+      throw new InvalidObjectException("resources required");
+    }
+    if (ordering == null) {
+      throw new InvalidObjectException("ordering required");
+    }
+    PersistentHashSet<R> newResources = PersistentHashSet.empty();
+    for (R resource : resources) {
+      if (resource == null) {
+        throw new InvalidObjectException("null resource");
+      }
+      newResources = newResources.plus(resource);
+    }
+    PersistentHashMap<R, PersistentHashSet<Before<R>>> newOrdering = PersistentHashMap.empty();
+    for (Map.Entry<R, Set<Before<R>>> entry : ordering.entrySet()) {
+      R after = entry.getKey();
+      Set<Before<R>> befores = entry.getValue();
+      if (after == null || befores == null) {
+        throw new InvalidObjectException("null ordering");
+      }
+      PersistentHashSet<Before<R>> newBefores = PersistentHashSet.empty();
+      for (Before<R> before : befores) {
+        if (before == null) {
+          throw new InvalidObjectException("null before");
         }
-        resources.addAll(other.resources);
-        for (Map.Entry<R, Set<Before<R>>> entry : other.ordering.entrySet()) {
-          R after = entry.getKey();
-          Set<Before<R>> befores = ordering.get(after);
-          if (befores == null) {
-            befores = new HashSet<>();
-            ordering.put(after, befores);
+        newBefores = newBefores.plus(before);
+      }
+      if (!newBefores.isEmpty()) {
+        newOrdering = newOrdering.plus(after, newBefores);
+      }
+    }
+    state = State.indexed(newResources, newOrdering);
+  }
+
+  /**
+   * Writes the resources and ordering constraints in the {@linkplain CompactForm compact form}.
+   * Each ordering constraint is a pair of indexes, with the required flag in the lowest bit
+   * of the before index.
+   *
+   * @param  indexer  Gets the index of each resource in the table of its type
+   */
+  final void writeCompact(CompactForm.Output out, ToIntFunction<? super R> indexer) throws IOException {
+    State<R> s = state;
+    out.writeVarInt(s.resources.size());
+    for (R resource : s.resources) {
+      out.writeVarInt(indexer.applyAsInt(resource));
+    }
+    int pairs = 0;
+    for (PersistentHashSet<Before<R>> befores : s.ordering.values()) {
+      pairs += befores.size();
+    }
+    out.writeVarInt(pairs);
+    for (Map.Entry<R, PersistentHashSet<Before<R>>> entry : s.ordering.entrySet()) {
+      int after = indexer.applyAsInt(entry.getKey());
+      for (Before<R> before : entry.getValue()) {
+        out.writeVarInt(after);
+        out.writeVarInt((indexer.applyAsInt(before.getBefore()) << 1) | (before.isRequired() ? 1 : 0));
+      }
+    }
+  }
+
+  /**
+   * Reads the resources and ordering constraints from the {@linkplain CompactForm compact form}
+   * into these new resources.  The sort is performed when first needed.
+   *
+   * @param  resolver  Gets each resource by its index in the table of its type
+   */
+  final void readCompact(CompactForm.Input in, CompactForm.Resolver<? extends R> resolver) throws IOException {
+    PersistentHashSet<R> newResources = PersistentHashSet.empty();
+    for (int i = in.readVarInt(); i > 0; i--) {
+      newResources = newResources.plus(resolver.get(in.readVarInt()));
+    }
+    PersistentHashMap<R, PersistentHashSet<Before<R>>> newOrdering = PersistentHashMap.empty();
+    for (int i = in.readVarInt(); i > 0; i--) {
+      R after = resolver.get(in.readVarInt());
+      int before = in.readVarInt();
+      PersistentHashSet<Before<R>> befores = newOrdering.get(after);
+      if (befores == null) {
+        befores = PersistentHashSet.empty();
+      }
+      newOrdering = newOrdering.plus(after, befores.plus(new Before<>(resolver.get(before >>> 1), (before & 1) != 0)));
+    }
+    setState(state, State.indexed(newResources, newOrdering));
+  }
+
+  /**
+   * Checks if these resources have the same resources and ordering constraints as the given
+   * resources, by identity of their immutable state.  This is the case for a copy
+   * until either is changed.
+   */
+  final boolean isSameState(Resources<R> other) {
+    State<R> s = state;
+    State<R> o = other.state;
+    return s.resources == o.resources && s.ordering == o.ordering;
+  }
+
+  private static long mix(long value) {
+    value *= 0x9e3779b97f4a7c15L;
+    return value ^ (value >>> 32);
+  }
+
+  /**
+   * Gets a fingerprint of the resources and ordering constraints that does not depend
+   * on iteration order.  This is consistent between JVMs when the hash codes of the resources
+   * are, as they are for {@link Style} and {@link Script}.
+   */
+  final long fingerprint() {
+    State<R> s = state;
+    long fingerprint = s.resources.size();
+    for (R resource : s.resources) {
+      fingerprint += mix(resource.hashCode());
+    }
+    for (Map.Entry<R, PersistentHashSet<Before<R>>> entry : s.ordering.entrySet()) {
+      long after = entry.getKey().hashCode() * 31L;
+      for (Before<R> before : entry.getValue()) {
+        fingerprint += mix(after + before.hashCode());
+      }
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Finds the resources of {@code from} that are not in {@code to}.
+   */
+  private static <R> List<R> missingResources(PersistentHashSet<R> from, PersistentHashSet<R> to) {
+    List<R> missing = new ArrayList<>();
+    if (from != to) {
+      for (R resource : from) {
+        if (!to.contains(resource)) {
+          missing.add(resource);
+        }
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Finds the ordering constraints of {@code from} that are not in {@code to}, skipping
+   * each set of befores that is shared.
+   */
+  private static <R extends Resource<R> & Comparable<? super R>> List<Map.Entry<R, Before<R>>> missingPairs(
+      PersistentHashMap<R, PersistentHashSet<Before<R>>> from,
+      PersistentHashMap<R, PersistentHashSet<Before<R>>> to
+  ) {
+    List<Map.Entry<R, Before<R>>> missing = new ArrayList<>();
+    if (from != to) {
+      for (Map.Entry<R, PersistentHashSet<Before<R>>> entry : from.entrySet()) {
+        R after = entry.getKey();
+        PersistentHashSet<Before<R>> befores = entry.getValue();
+        PersistentHashSet<Before<R>> toBefores = to.get(after);
+        if (befores != toBefores) {
+          for (Before<R> before : befores) {
+            if (toBefores == null || !toBefores.contains(before)) {
+              missing.add(new AbstractMap.SimpleImmutableEntry<>(after, before));
+            }
           }
-          befores.addAll(entry.getValue());
         }
       }
     }
-    sorted = null;
+    return missing;
+  }
+
+  private static <R> void writeResources(
+      CompactForm.Output out,
+      ToIntFunction<? super R> indexer,
+      List<R> resources
+  ) throws IOException {
+    out.writeVarInt(resources.size());
+    for (R resource : resources) {
+      out.writeVarInt(indexer.applyAsInt(resource));
+    }
+  }
+
+  private static <R extends Resource<R> & Comparable<? super R>> void writePairs(
+      CompactForm.Output out,
+      ToIntFunction<? super R> indexer,
+      List<Map.Entry<R, Before<R>>> pairs
+  ) throws IOException {
+    out.writeVarInt(pairs.size());
+    for (Map.Entry<R, Before<R>> pair : pairs) {
+      Before<R> before = pair.getValue();
+      out.writeVarInt(indexer.applyAsInt(pair.getKey()));
+      out.writeVarInt((indexer.applyAsInt(before.getBefore()) << 1) | (before.isRequired() ? 1 : 0));
+    }
+  }
+
+  /**
+   * Writes the changes of these resources from the given baseline in the {@linkplain CompactForm compact form}:
+   * the removed resources, the added resources, the removed ordering constraints, then the added
+   * ordering constraints.  Sets shared with the baseline are skipped without being compared.
+   *
+   * @param  indexer  Gets the index of each resource in the table of its type
+   */
+  final void writeCompactDelta(CompactForm.Output out, Resources<R> baseline, ToIntFunction<? super R> indexer) throws IOException {
+    State<R> s = state;
+    State<R> b = baseline.state;
+    writeResources(out, indexer, missingResources(b.resources, s.resources));
+    writeResources(out, indexer, missingResources(s.resources, b.resources));
+    writePairs(out, indexer, missingPairs(b.ordering, s.ordering));
+    writePairs(out, indexer, missingPairs(s.ordering, b.ordering));
+  }
+
+  private static <R extends Resource<R> & Comparable<? super R>> Before<R> readBefore(
+      CompactForm.Input in,
+      CompactForm.Resolver<? extends R> resolver
+  ) throws IOException {
+    int before = in.readVarInt();
+    return new Before<>(resolver.get(before >>> 1), (before & 1) != 0);
   }
 
   /**
-   * Gets a deep copy of these resources.
+   * Applies the changes read from the {@linkplain CompactForm compact form} to these new resources,
+   * which are a copy of the baseline.  The sort is performed when first needed.
+   *
+   * @param  resolver  Gets each resource by its index in the table of its type
+   *
+   * @see  #writeCompactDelta(com.aoapps.web.resources.registry.CompactForm.Output, com.aoapps.web.resources.registry.Resources, java.util.function.ToIntFunction)
+   */
+  final void readCompactDelta(CompactForm.Input in, CompactForm.Resolver<? extends R> resolver) throws IOException {
+    State<R> s = state;
+    PersistentHashSet<R> newResources = s.resources;
+    for (int i = in.readVarInt(); i > 0; i--) {
+      newResources = newResources.minus(resolver.get(in.readVarInt()));
+    }
+    for (int i = in.readVarInt(); i > 0; i--) {
+      newResources = newResources.plus(resolver.get(in.readVarInt()));
+    }
+    PersistentHashMap<R, PersistentHashSet<Before<R>>> newOrdering = s.ordering;
+    for (int i = in.readVarInt(); i > 0; i--) {
+      R after = resolver.get(in.readVarInt());
+      Before<R> before = readBefore(in, resolver);
+      PersistentHashSet<Before<R>> befores = newOrdering.get(after);
+      if (befores != null) {
+        befores = befores.minus(before);
+        newOrdering = befores.isEmpty() ? newOrdering.minus(after) : newOrdering.plus(after, befores);
+      }
+    }
+    for (int i = in.readVarInt(); i > 0; i--) {
+      R after = resolver.get(in.readVarInt());
+      Before<R> before = readBefore(in, resolver);
+      PersistentHashSet<Before<R>> befores = newOrdering.get(after);
+      if (befores == null) {
+        befores = PersistentHashSet.empty();
+      }
+      newOrdering = newOrdering.plus(after, befores.plus(before));
+    }
+    if (newResources != s.resources || newOrdering != s.ordering) {
+      setState(s, State.indexed(newResources, newOrdering));
+    }
+  }
+
+  /**
+   * Gets a copy of these resources.  The copy shares the immutable state of
+   * these resources until either is changed.
+   *
+   * <p>The copy of {@linkplain #freeze() frozen} resources is not frozen.</p>
    */
   protected Resources<R> copy() {
     return new Resources<>(this);
   }
 
+  /**
+   * Changes resources and ordering constraints within a {@linkplain Resources#batch(java.util.function.Consumer) batch}.
+   * A mutator may only be used during the batch it is given to.
+   *
+   * @author  AO Industries, Inc.
+   */
+  public interface Mutator<R extends Resource<R> & Comparable<? super R>> {
+
+    /**
+     * Adds a new resource, if not already present.
+     *
+     * @return  {@code true} if the resource was added, or {@code false} if already exists and was not added
+     */
+    boolean add(R resource);
+
+    /**
+     * Removes a resource.
+     *
+     * @return  {@code true} if the resource was removed, or {@code false} if the resource was not found
+     */
+    boolean remove(R resource);
+
+    /**
+     * Adds an ordering constraint between two resources.
+     *
+     * @return  {@code true} if the ordering was added, or {@code false} if already exists and was not added
+     */
+    boolean addOrdering(boolean required, R before, R after);
+
+    /**
+     * Adds a required ordering constraint between two resources.
+     */
+    default boolean addOrdering(R before, R after) {
+      return addOrdering(true, before, after);
+    }
+
+    /**
+     * Removes an ordering constraint between two resources.
+     *
+     * @return  {@code true} if the ordering was removed, or {@code false} if the ordering was not found
+     */
+    boolean removeOrdering(boolean required, R before, R after);
+
+    /**
+     * Removes a required ordering constraint between two resources.
+     */
+    default boolean removeOrdering(R before, R after) {
+      return removeOrdering(true, before, after);
+    }
+  }
+
+  /**
+   * Applies changes to a working copy of the current state, which is then published
+   * as a single new state.  Used only while holding the lock on these resources.
+   */
+  private final class Mutation implements Mutator<R> {
+
+    private final State<R> base;
+    private PersistentHashSet<R> resources;
+    private PersistentHashMap<R, PersistentHashSet<Before<R>>> ordering;
+    private PersistentHashMap<Object, PersistentHashSet<R>> resourcesByUri;
+    private PersistentHashMap<Object, PersistentHashSet<R>> aftersByUri;
+    private PersistentHashMap<Object, PersistentHashSet<R>> aftersByBeforeUri;
+    private TopologicalOrder<R> order;
+    private boolean changed;
+    private int changeCount;
+    private boolean closed;
+
+    private Mutation() {
+      assert Thread.holdsLock(Resources.this);
+      base = state;
+      resources = base.resources;
+      ordering = base.ordering;
+      resourcesByUri = base.resourcesByUri;
+      aftersByUri = base.aftersByUri;
+      aftersByBeforeUri = base.aftersByBeforeUri;
+      order = base.order;
+    }
+
+    /**
+     * Records a change.  Once there have been more changes than resources, the sort is
+     * discarded instead of being maintained in-place, since a single full sort is then
+     * expected to be faster.
+     */
+    private void markChanged() {
+      changed = true;
+      if (order != null && ++changeCount > resources.size()) {
+        order = null;
+      }
+    }
+
+    private void checkOpen() throws IllegalStateException {
+      if (closed) {
+        throw new IllegalStateException("Batch has ended");
+      }
+    }
+
+    /**
+     * Checks if any ordering constraint, either as a before or an after, has the given
+     * {@linkplain #uriKey(com.aoapps.web.resources.registry.Resource) URI}.  Constraints
+     * are considered even when the other resource is not currently present.
+     */
+    private boolean isOrdered(Object key) {
+      return aftersByUri.containsKey(key) || aftersByBeforeUri.containsKey(key);
+    }
+
+    /**
+     * Checks if adding an ordering constraint has no effect on the given order, with each
+     * side matching all the resources with its URI.  When any matched pair is not
+     * {@linkplain #checkOrdering(com.aoapps.web.resources.registry.Resource, com.aoapps.web.resources.registry.Resource) allowed},
+     * this is {@code false} so the full sort reports it.
+     */
+    private boolean isSatisfied(TopologicalOrder<R> o, R before, boolean required, R after) {
+      PersistentHashSet<R> befores = resourcesByUri.get(uriKey(before));
+      if (befores == null) {
+        // Let the full sort report the missing resource
+        return !required;
+      }
+      PersistentHashSet<R> afters = resourcesByUri.get(uriKey(after));
+      if (afters != null) {
+        for (R b : befores) {
+          for (R a : afters) {
+            if (!o.isSatisfied(b, a)) {
+              return false;
+            }
+            try {
+              checkOrdering(b, a);
+            } catch (IllegalArgumentException e) {
+              return false;
+            }
+          }
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Gets the prerequisites of a resource, with each constraint matching all the resources
+     * with its URI.
+     */
+    private List<R> getPrerequisites(R after) {
+      List<R> prerequisites = new ArrayList<>();
+      PersistentHashSet<R> keys = aftersByUri.get(uriKey(after));
+      if (keys != null) {
+        for (R key : keys) {
+          for (Before<R> before : ordering.get(key)) {
+            PersistentHashSet<R> befores = resourcesByUri.get(uriKey(before.getBefore()));
+            if (befores != null) {
+              prerequisites.addAll(befores);
+            }
+          }
+        }
+      }
+      return prerequisites;
+    }
+
+    /**
+     * Checks if having removed an ordering constraint has no effect on the given order.
+     * This is only determined when each side matches at most one resource.
+     */
+    private boolean isUnconstrained(TopologicalOrder<R> o, R before, R after) {
+      PersistentHashSet<R> befores = resourcesByUri.get(uriKey(before));
+      PersistentHashSet<R> afters = resourcesByUri.get(uriKey(after));
+      if (befores == null || afters == null) {
+        // The constraint did not order any resources
+        return true;
+      }
+      if (befores.size() != 1 || afters.size() != 1) {
+        return false;
+      }
+      R a = afters.iterator().next();
+      return o.isUnconstrained(befores.iterator().next(), a, getPrerequisites(a));
+    }
+
+    /**
+     * Checks if having added a resource, which is in the given order as if it has no
+     * prerequisites and frees no others, has no effect on the order.  This is the case
+     * when the order satisfies each ordering constraint with the resource's
+     * {@linkplain #uriKey(com.aoapps.web.resources.registry.Resource) URI}, as with
+     * adding the constraints one at a time.
+     */
+    private boolean isAddedSatisfied(TopologicalOrder<R> o, Object key) {
+      PersistentHashSet<R> afters = aftersByUri.get(key);
+      if (afters != null) {
+        for (R after : afters) {
+          for (Before<R> before : ordering.get(after)) {
+            if (!isSatisfied(o, before.getBefore(), before.isRequired(), after)) {
+              return false;
+            }
+          }
+        }
+      }
+      afters = aftersByBeforeUri.get(key);
+      if (afters != null) {
+        for (R after : afters) {
+          for (Before<R> before : ordering.get(after)) {
+            if (
+                uriKey(before.getBefore()).equals(key)
+                    && !isSatisfied(o, before.getBefore(), before.isRequired(), after)
+            ) {
+              return false;
+            }
+          }
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Checks if having removed a resource has no effect on the given order, other than
+     * removing the resource.  Only the resources after the removed resource are freed,
+     * so this is the case when each would still not have been chosen sooner.  A required
+     * resource with no other resource by its
+     * {@linkplain #uriKey(com.aoapps.web.resources.registry.Resource) URI} is left for
+     * the full sort to report.
+     */
+    private boolean isRemovedUnconstrained(TopologicalOrder<R> o, R resource, Object key) {
+      PersistentHashSet<R> afters = aftersByBeforeUri.get(key);
+      if (afters != null) {
+        boolean keyRemains = resourcesByUri.containsKey(key);
+        Set<R> freed = new HashSet<>();
+        for (R after : afters) {
+          if (!keyRemains) {
+            for (Before<R> before : ordering.get(after)) {
+              if (before.isRequired() && uriKey(before.getBefore()).equals(key)) {
+                return false;
+              }
+            }
+          }
+          PersistentHashSet<R> matched = resourcesByUri.get(uriKey(after));
+          if (matched != null) {
+            freed.addAll(matched);
+          }
+        }
+        for (R a : freed) {
+          if (!o.isUnconstrained(resource, a, getPrerequisites(a))) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean add(R resource) {
+      checkOpen();
+      if (resource == null) {
+        throw new NullArgumentException("resource");
+      }
+      return doAdd(resource);
+    }
+
+    private boolean doAdd(R resource) {
+      if (resources.contains(resource)) {
+        return false;
+      }
+      Object key = uriKey(resource);
+      resources = resources.plus(resource);
+      resourcesByUri = plusValue(resourcesByUri, key, resource);
+      TopologicalOrder<R> o = order;
+      if (o != null) {
+        o = o.added(resource);
+        order = !isOrdered(key) || isAddedSatisfied(o, key) ? o : null;
+      }
+      markChanged();
+      return true;
+    }
+
+    @Override
+    public boolean remove(R resource) {
+      checkOpen();
+      return doRemove(resource);
+    }
+
+    private boolean doRemove(R resource) {
+      if (resource == null || !resources.contains(resource)) {
+        return false;
+      }
+      Object key = uriKey(resource);
+      resources = resources.minus(resource);
+      resourcesByUri = minusValue(resourcesByUri, key, resource);
+      TopologicalOrder<R> o = order;
+      if (o != null) {
+        order = !isOrdered(key) || isRemovedUnconstrained(o, resource, key) ? o.removed(resource) : null;
+      }
+      markChanged();
+      return true;
+    }
+
+    @Override
+    public boolean addOrdering(boolean required, R before, R after) {
+      checkOpen();
+      if (before == null) {
+        throw new NullArgumentException("before");
+      }
+      if (after == null) {
+        throw new NullArgumentException("after");
+      }
+      checkOrdering(before, after);
+      return doAddOrdering(new Before<>(before, required), after);
+    }
+
+    /**
+     * Adds an ordering constraint to the working copy, along with the indexes by URI.
+     *
+     * @return  {@code true} when added or {@code false} when already present
+     */
+    private boolean plusOrdering(Before<R> newBefore, R after) {
+      PersistentHashSet<Before<R>> befores = ordering.get(after);
+      if (befores == null) {
+        befores = PersistentHashSet.empty();
+        aftersByUri = plusValue(aftersByUri, uriKey(after), after);
+      } else if (befores.contains(newBefore)) {
+        return false;
+      }
+      ordering = ordering.plus(after, befores.plus(newBefore));
+      aftersByBeforeUri = plusValue(aftersByBeforeUri, uriKey(newBefore.getBefore()), after);
+      return true;
+    }
+
+    private boolean doAddOrdering(Before<R> newBefore, R after) {
+      if (!plusOrdering(newBefore, after)) {
+        return false;
+      }
+      TopologicalOrder<R> o = order;
+      if (o != null && !isSatisfied(o, newBefore.getBefore(), newBefore.isRequired(), after)) {
+        order = null;
+      }
+      markChanged();
+      return true;
+    }
+
+    /**
+     * Adds an ordering constraint between each adjacent pair of an already checked chain.
+     * The sort is checked once all constraints of the chain are added.
+     */
+    private void doAddOrderingChain(boolean required, List<R> chain) {
+      boolean added = false;
+      for (int i = 1, size = chain.size(); i < size; i++) {
+        if (plusOrdering(new Before<>(chain.get(i - 1), required), chain.get(i))) {
+          added = true;
+        }
+      }
+      if (added) {
+        TopologicalOrder<R> o = order;
+        if (o != null) {
+          for (int i = 1, size = chain.size(); i < size; i++) {
+            if (!isSatisfied(o, chain.get(i - 1), required, chain.get(i))) {
+              order = null;
+              break;
+            }
+          }
+        }
+        markChanged();
+      }
+    }
+
+    @Override
+    public boolean removeOrdering(boolean required, R before, R after) {
+      checkOpen();
+      return doRemoveOrdering(required, before, after);
+    }
+
+    private boolean doRemoveOrdering(boolean required, R before, R after) {
+      PersistentHashSet<Before<R>> befores = after == null ? null : ordering.get(after);
+      if (befores == null) {
+        return false;
+      }
+      PersistentHashSet<Before<R>> newBefores = befores.minus(new Before<>(before, required));
+      if (newBefores == befores) {
+        return false;
+      }
+      if (newBefores.isEmpty()) {
+        ordering = ordering.minus(after);
+        aftersByUri = minusValue(aftersByUri, uriKey(after), after);
+      } else {
+        ordering = ordering.plus(after, newBefores);
+      }
+      Object beforeKey = uriKey(before);
+      boolean beforeKeyRemains = false;
+      for (Before<R> other : newBefores) {
+        if (uriKey(other.getBefore()).equals(beforeKey)) {
+          beforeKeyRemains = true;
+          break;
+        }
+      }
+      if (!beforeKeyRemains) {
+        aftersByBeforeUri = minusValue(aftersByBeforeUri, beforeKey, after);
+      }
+      TopologicalOrder<R> o = order;
+      if (o != null && !isUnconstrained(o, before, after)) {
+        order = null;
+      }
+      markChanged();
+      return true;
+    }
+
+    /**
+     * Publishes the changes, if any, and ends this mutation.
+     *
+     * @throws  IllegalStateException  when these resources were changed other than through this mutation
+     */
+    private void publish() throws IllegalStateException {
+      closed = true;
+      if (changed) {
+        if (state != base) {
+          throw new IllegalStateException("Resources changed during batch other than through its mutator");
+        }
+        setState(base, new State<>(resources, ordering, resourcesByUri, aftersByUri, aftersByBeforeUri, order));
+      }
+    }
+  }
+
+  /**
+   * Applies any number of changes while holding the lock only once.  The changes are
+   * published together, as a single new {@linkplain #getVersion() version}, once all
+   * have been applied.  When {@code changes} throws an exception, no changes are published.
+   *
+   * <p>As with single changes, the cached sort is maintained in-place for each change
+   * that allows it.  Once a batch has more changes than there are resources, the cached
+   * sort is discarded instead, resulting in a single full sort on the next
+   * {@link #getSorted()}.</p>
+   *
+   * <p>All changes must be made through the given mutator, which may not be used once
+   * this method returns.</p>
+   *
+   * @return  {@code this}
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
+   */
+  public Resources<R> batch(Consumer<? super Mutator<R>> changes) throws IllegalStateException {
+    if (changes == null) {
+      throw new NullArgumentException("changes");
+    }
+    synchronized (this) {
+      checkNotFrozen();
+      Mutation mutation = new Mutation();
+      try {
+        changes.accept(mutation);
+        mutation.publish();
+      } finally {
+        mutation.closed = true;
+      }
+    }
+    return this;
+  }
+
   /**
    * Adds a new resource, if not already present.
    *
    * @return  {@code true} if the resource was added, or {@code false} if already exists and was not added
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
    */
   public synchronized boolean add(R resource) {
     if (resource == null) {
       throw new NullArgumentException("resource");
     }
-    boolean added = resources.add(resource);
-    if (added) {
-      sorted = null;
-    }
+    checkNotFrozen();
+    Mutation mutation = new Mutation();
+    boolean added = mutation.doAdd(resource);
+    mutation.publish();
     return added;
   }
 
   /**
-   * Adds new resources, if not already present.
+   * Adds new resources, if not already present, in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Resources<R> add(Iterable<? extends R> resources) {
     if (resources != null) {
-      for (R resource : resources) {
-        if (resource != null) {
-          add(resource);
+      batch(mutator -> {
+        for (R resource : resources) {
+          if (resource != null) {
+            mutator.add(resource);
+          }
         }
-      }
+      });
     }
     return this;
   }
 
   /**
-   * Adds new resources, if not already present.
+   * Adds new resources, if not already present, in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   @SuppressWarnings({"unchecked", "varargs"})
   public Resources<R> add(R ... resources) {
     if (resources != null) {
-      for (R resource : resources) {
-        if (resource != null) {
-          add(resource);
-        }
-      }
+      add(Arrays.asList(resources));
     }
     return this;
   }
@@ -209,47 +1226,52 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
    * Removes a resource.
    *
    * @return  {@code true} if the resource was removed, or {@code false} if the resource was not found
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
    */
   public synchronized boolean remove(R resource) {
-    boolean removed = resources.remove(resource);
-    if (removed) {
-      sorted = null;
-    }
+    checkNotFrozen();
+    Mutation mutation = new Mutation();
+    boolean removed = mutation.doRemove(resource);
+    mutation.publish();
     return removed;
   }
 
   /**
-   * Removes resources.
+   * Removes resources in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Resources<R> remove(Iterable<? extends R> resources) {
     if (resources != null) {
-      for (R resource : resources) {
-        if (resource != null) {
-          remove(resource);
+      batch(mutator -> {
+        for (R resource : resources) {
+          if (resource != null) {
+            mutator.remove(resource);
+          }
         }
-      }
+      });
     }
     return this;
   }
 
   /**
-   * Removes resources.
+   * Removes resources in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   @SuppressWarnings({"unchecked", "varargs"})
   public Resources<R> remove(R ... resources) {
     if (resources != null) {
-      for (R resource : resources) {
-        if (resource != null) {
-          remove(resource);
-        }
-      }
+      remove(Arrays.asList(resources));
     }
     return this;
   }
 
   /**
    * Checks that the before and after ordering is allowed.
-   * This is called outside of the synchronized block.
+   * This is called outside of the synchronized block, except during a
+   * {@linkplain #batch(java.util.function.Consumer) batch}.
+   *
+   * <p>Since each side of a constraint matches all the resources with its URI, this is also called
+   * for each pair of matched resources when sorted.  A pair that is not allowed is then reported by
+   * the sort as {@link IllegalStateException}.</p>
    *
    * @throws IllegalArgumentException if the ordering is not allowed
    */
@@ -258,11 +1280,13 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
   }
 
   /**
-   * Adds an ordering constraint between two resources.
+   * Adds an ordering constraint between two resources.  Each side matches all the
+   * resources with its {@linkplain Resource#getUri() URI}.
    *
    * @return  {@code true} if the ordering was added, or {@code false} if already exists and was not added
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
    */
-  // TODO: before and after should be URI for lookup purposes only?  They may not have position information if setup as direct URI-only string.
   public boolean addOrdering(boolean required, R before, R after) {
     if (before == null) {
       throw new NullArgumentException("before");
@@ -271,16 +1295,12 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
       throw new NullArgumentException("after");
     }
     checkOrdering(before, after);
+    Before<R> newBefore = new Before<>(before, required);
     synchronized (this) {
-      Set<Before<R>> set = ordering.get(after);
-      if (set == null) {
-        set = new HashSet<>();
-        ordering.put(after, set);
-      }
-      boolean added = set.add(new Before<>(before, required));
-      if (added) {
-        sorted = null;
-      }
+      checkNotFrozen();
+      Mutation mutation = new Mutation();
+      boolean added = mutation.doAddOrdering(newBefore, after);
+      mutation.publish();
       return added;
     }
   }
@@ -294,18 +1314,34 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
 
   /**
    * Adds ordering constraints between multiple resources, if not already present.
+   *
+   * <p>The whole chain is {@linkplain #checkOrdering(com.aoapps.web.resources.registry.Resource, com.aoapps.web.resources.registry.Resource) checked}
+   * before locking, then added while locking once.  The cached sort is kept when the sort
+   * already satisfies the chain.</p>
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
    */
   public Resources<R> addOrdering(boolean required, Iterable<? extends R> resources) {
     if (resources != null) {
+      List<R> chain = new ArrayList<>();
       R lastResource = null;
       for (R resource : resources) {
         if (resource != null) {
           if (lastResource != null) {
-            addOrdering(required, lastResource, resource);
+            checkOrdering(lastResource, resource);
           }
+          chain.add(resource);
           lastResource = resource;
         }
       }
+      if (chain.size() > 1) {
+        synchronized (this) {
+          checkNotFrozen();
+          Mutation mutation = new Mutation();
+          mutation.doAddOrderingChain(required, chain);
+          mutation.publish();
+        }
+      }
     }
     return this;
   }
@@ -319,19 +1355,18 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
 
   /**
    * Adds ordering constraints between multiple resources, if not already present.
+   *
+   * <p>As with {@link #addOrdering(boolean, java.lang.Iterable)}, the whole chain is
+   * {@linkplain #checkOrdering(com.aoapps.web.resources.registry.Resource, com.aoapps.web.resources.registry.Resource) checked}
+   * before locking, then added while locking once.  The cached sort is kept when the sort
+   * already satisfies the chain.</p>
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
    */
   @SuppressWarnings({"unchecked", "varargs"})
   public Resources<R> addOrdering(boolean required, R ... resources) {
     if (resources != null) {
-      R lastResource = null;
-      for (R resource : resources) {
-        if (resource != null) {
-          if (lastResource != null) {
-            addOrdering(required, lastResource, resource);
-          }
-          lastResource = resource;
-        }
-      }
+      addOrdering(required, Arrays.asList(resources));
     }
     return this;
   }
@@ -348,18 +1383,15 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
    * Removes an ordering constraint between two resources.
    *
    * @return  {@code true} if the ordering was removed, or {@code false} if the ordering was not found
+   *
+   * @throws  IllegalStateException  when {@linkplain #freeze() frozen}
    */
   public synchronized boolean removeOrdering(boolean required, R before, R after) {
-    Set<Before<R>> set = ordering.get(after);
-    if (set != null) {
-      boolean removed = set.remove(new Before<>(before, required));
-      if (removed) {
-        sorted = null;
-      }
-      return removed;
-    } else {
-      return false;
-    }
+    checkNotFrozen();
+    Mutation mutation = new Mutation();
+    boolean removed = mutation.doRemoveOrdering(required, before, after);
+    mutation.publish();
+    return removed;
   }
 
   /**
@@ -370,19 +1402,22 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
   }
 
   /**
-   * Removes ordering constraints between multiple resources.
+   * Removes ordering constraints between multiple resources in a single
+   * {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Resources<R> removeOrdering(boolean required, Iterable<? extends R> resources) {
     if (resources != null) {
-      R lastResource = null;
-      for (R resource : resources) {
-        if (resource != null) {
-          if (lastResource != null) {
-            removeOrdering(required, lastResource, resource);
+      batch(mutator -> {
+        R lastResource = null;
+        for (R resource : resources) {
+          if (resource != null) {
+            if (lastResource != null) {
+              mutator.removeOrdering(required, lastResource, resource);
+            }
+            lastResource = resource;
           }
-          lastResource = resource;
         }
-      }
+      });
     }
     return this;
   }
@@ -395,20 +1430,13 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
   }
 
   /**
-   * Removes ordering constraints between multiple resources.
+   * Removes ordering constraints between multiple resources in a single
+   * {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   @SuppressWarnings({"unchecked", "varargs"})
   public Resources<R> removeOrdering(boolean required, R ... resources) {
     if (resources != null) {
-      R lastResource = null;
-      for (R resource : resources) {
-        if (resource != null) {
-          if (lastResource != null) {
-            removeOrdering(required, lastResource, resource);
-          }
-          lastResource = resource;
-        }
-      }
+      removeOrdering(required, Arrays.asList(resources));
     }
     return this;
   }
@@ -422,113 +1450,189 @@ public class Resources<R extends Resource<R> & Comparable<? super R>> implements
   }
 
   /**
-   * Performs the topological sort.
+   * Gets a snapshot copy of the current set of resources, in no particular order.
+   *
+   * <p>This does not lock and does not copy, since the current state is immutable.</p>
+   */
+  public Set<R> getSnapshot() {
+    return state.resources;
+  }
+
+  /**
+   * Gets the set of all resources of the given class, in their
+   * {@linkplain Resource#compareTo(com.aoapps.web.resources.registry.Resource) natural ordering}
+   * except where ordering constraints require otherwise.  Of all the orders that satisfy
+   * the ordering constraints, this is the one that is first by natural ordering, compared
+   * resource by resource.
+   *
+   * <p>The sort is cached.  Adding or removing a resource that is not part of any
+   * ordering constraint, or an ordering constraint that does not change the
+   * order, updates the cached sort in-place.  Other changes will perform a
+   * full sort on the next call.</p>
+   *
+   * <p>When the sort is cached, this does not lock.</p>
+   *
+   * <p>Once {@linkplain #freeze() frozen}, this always returns the same array-backed set.</p>
    *
    * @return  An unmodifiable set, in the sorted order.
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
    */
-  private Set<R> topologicalSort(List<R> list) {
-    assert Thread.holdsLock(this);
-    // Build a SymmetricGraph, while making sure all required are found
-    Map<R, Set<Edge<R>>> edgesTo = new HashMap<>();
-    Map<R, Set<Edge<R>>> edgesFrom = new HashMap<>();
-    Set<R> vertices = new LinkedHashSet<>(list);
-    for (Map.Entry<R, Set<Before<R>>> entry : ordering.entrySet()) {
-      R from = entry.getKey();
-      for (Before<R> before : entry.getValue()) {
-        R to = before.before;
-        if (vertices.contains(to)) {
-          Edge<R> edge = new Edge<>(from, to);
-          Set<Edge<R>> toSet = edgesTo.get(to);
-          if (toSet == null) {
-            toSet = new LinkedHashSet<>();
-            edgesTo.put(to, toSet);
-          }
-          toSet.add(edge);
+  public Set<R> getSorted() {
+    Set<R> f = frozen;
+    if (f != null) {
+      return f;
+    }
+    return getOrder().getSorted();
+  }
 
-          Set<Edge<R>> fromSet = edgesFrom.get(from);
-          if (fromSet == null) {
-            fromSet = new LinkedHashSet<>();
-            edgesFrom.put(from, fromSet);
+  /**
+   * Gets the current sort, performing a full sort when not cached.
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   */
+  private TopologicalOrder<R> getOrder() throws IllegalStateException {
+    State<R> s = state;
+    TopologicalOrder<R> o = s.order;
+    if (o == null) {
+      // Locking the state, which may be shared, sorts it only once
+      synchronized (s) {
+        o = s.order;
+        if (o == null) {
+          o = TopologicalOrder.sort(s.resources, s.ordering, s.resourcesByUri, this::checkOrdering);
+          if (logger.isLoggable(Level.FINER)) {
+            StringBuilder message = new StringBuilder("topological sorted:");
+            for (R resource : o.getSorted()) {
+              message.append(EOL).append("    ").append(resource);
+            }
+            logger.finer(message.toString());
           }
-          fromSet.add(edge);
-        } else if (before.required) {
-          throw new IllegalStateException(
-              "Required resource not found:\n"
-                  + "    before = " + to + "\n"
-                  + "    after  = " + from
-          );
+          // Cache the value, which is updated in-place for simple changes
+          s.order = o;
         }
       }
     }
-    // Java 9: new SymmetricGraph<>
-    SymmetricGraph<R, Edge<R>, RuntimeException> graph = new SymmetricGraph<R, Edge<R>, RuntimeException>() {
-      @Override
-      public Set<Edge<R>> getEdgesTo(R to) {
-        Set<Edge<R>> set = edgesTo.get(to);
-        return (set == null) ? Collections.emptySet() : set;
-      }
+    return o;
+  }
 
-      @Override
-      public Set<Edge<R>> getEdgesFrom(R from) {
-        Set<Edge<R>> set = edgesFrom.get(from);
-        return (set == null) ? Collections.emptySet() : set;
+  /**
+   * Gets views derived from the current sort, such as the sorted resources of
+   * a single kind.  The views are created once per sort and are shared by all
+   * resources that share the sort, including copies and cached unions.
+   *
+   * <p>Each subclass must always use the same type of views.</p>
+   *
+   * @param  factory  Creates the views from the sorted resources
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   */
+  @SuppressWarnings("unchecked")
+  final <V> V getSortedViews(Function<? super Set<R>, ? extends V> factory) throws IllegalStateException {
+    TopologicalOrder<R> o = getOrder();
+    Object views = o.views;
+    if (views == null) {
+      Set<R> sorted = o.getSorted();
+      views = factory.apply(sorted);
+      // The empty state, along with its sort, is shared by all kinds of resources
+      if (!sorted.isEmpty()) {
+        o.views = views;
       }
+    }
+    return (V) views;
+  }
 
-      @Override
-      public Set<R> getVertices() {
-        return vertices;
-      }
-    };
-    // Perform the sort
-    return AoCollections.optimalUnmodifiableSet(new TopologicalSorter<>(graph, true).sortGraph());
+  /**
+   * Freezes these resources, after which they may no longer be changed.  The
+   * sort is performed immediately, validating all ordering constraints, and
+   * {@link #getSorted()} will then always return the same array-backed set
+   * without locking.
+   *
+   * <p>Freezing is not serialized, and the {@linkplain #copy() copy} of frozen
+   * resources is not frozen.</p>
+   *
+   * @return  {@code this}
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   */
+  public synchronized Resources<R> freeze() throws IllegalStateException {
+    if (frozen == null) {
+      State<R> s = state;
+      frozen = new ArraySetView<>(getSorted().toArray(), s.resources);
+    }
+    return this;
   }
 
   /**
-   * Gets a snapshot copy of the current set of resources, in no particular order.
+   * Checks if these resources are {@linkplain #freeze() frozen}.
    */
-  public synchronized Set<R> getSnapshot() {
-    return AoCollections.unmodifiableCopySet(resources);
+  public boolean isFrozen() {
+    return frozen != null;
   }
 
   /**
-   * Gets the set of all resources of the given class, first with their
-   * {@linkplain Resource#compareTo(com.aoapps.web.resources.registry.Resource) natural ordering},
-   * then with a topological sort to manage ordering constraints.
+   * Called by all changes, while holding the lock on this object.
+   *
+   * @throws  IllegalStateException  when these resources are {@linkplain #freeze() frozen}
    */
-  public synchronized Set<R> getSorted() {
-    Set<R> s = sorted;
-    if (s == null) {
-      // Natural sort
-      List<R> list = new ArrayList<>(resources);
-      Collections.sort(list);
-      if (logger.isLoggable(Level.FINER)) {
-        StringBuilder message = new StringBuilder("list sorted:");
-        for (R resource : list) {
-          message.append(EOL).append("    ").append(resource);
-        }
-        logger.finer(message.toString());
-      }
-      // Topological sort
-      s = topologicalSort(list);
-      if (logger.isLoggable(Level.FINER)) {
-        StringBuilder message = new StringBuilder("topological sorted:");
-        for (R resource : s) {
-          message.append(EOL).append("    ").append(resource);
-        }
-        logger.finer(message.toString());
-      }
-      // Cache the value, unmodifiable
-      sorted = s;
+  private void checkNotFrozen() throws IllegalStateException {
+    if (frozen != null) {
+      throw new IllegalStateException("Resources are frozen");
     }
-    return s;
+  }
+
+  /**
+   * Gets the version of these resources.  The version changes whenever resources
+   * or ordering constraints are added or removed, and is shared by copies until
+   * either is changed.
+   *
+   * <p>Versions are assigned from a single increasing counter, so a change always
+   * increases the version, and each version identifies a single set of resources
+   * and ordering constraints.</p>
+   *
+   * <p>This does not lock.</p>
+   */
+  public long getVersion() {
+    return state.version;
   }
 
   /**
    * Gets these resources are empty.
+   *
+   * <p>This does not lock.</p>
    */
-  public synchronized boolean isEmpty() {
+  public boolean isEmpty() {
+    return isEmpty(state);
+  }
+
+  private static boolean isEmpty(State<?> s) {
     return
-        resources.isEmpty()
-            && ordering.isEmpty();
+        s.resources.isEmpty()
+            && s.ordering.isEmpty();
+  }
+
+  /**
+   * Replaces the state, telling the counter when changed between empty and non-empty.
+   */
+  private void setState(State<R> oldState, State<R> newState) {
+    state = newState;
+    NonEmptyCounter c = counter;
+    if (c != null) {
+      boolean nonEmpty = !isEmpty(newState);
+      if (nonEmpty == isEmpty(oldState)) {
+        c.changed(nonEmpty);
+      }
+    }
+  }
+
+  /**
+   * Adds these resources as a member of the given counter, which is then told each time
+   * these resources change between empty and non-empty.  This must be done before these
+   * resources are visible to other threads.
+   */
+  final void setCounter(NonEmptyCounter counter) {
+    this.counter = counter;
+    if (!isEmpty()) {
+      counter.changed(true);
+    }
   }
 }
@@ -1,6 +1,6 @@
 /*
  * ao-web-resources-registry - Central registry for web resource management.
- * Copyright (C) 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,6 +23,7 @@
 
 package com.aoapps.web.resources.registry;
 
+import com.aoapps.lang.NullArgumentException;
 import com.aoapps.lang.Strings;
 import com.aoapps.lang.text.SmartComparator;
 import java.util.Comparator;
@@ -165,9 +166,12 @@ public final class Script extends Resource<Script> implements Comparable<Script>
       return this;
     }
 
+    /**
+     * Builds the {@linkplain Script#of(java.lang.String, com.aoapps.web.resources.registry.Script.Position, boolean, boolean, java.lang.String) canonical script}.
+     */
     @Override
     public Script build() {
-      return new Script(
+      return of(
           uri,
           position,
           async,
@@ -183,11 +187,59 @@ public final class Script extends Resource<Script> implements Comparable<Script>
 
   private static final long serialVersionUID = 1L;
 
+  private static final Interner<Script, Script> interned = new Interner<>();
+
+  private static final Interner<String, Script> internedBySrc = new Interner<>();
+
+  /**
+   * Gets the canonical script with the given attributes.  Equal scripts are shared
+   * while in use, so repeated registrations do not retain duplicates and lookups
+   * may match by identity.
+   *
+   * @param src          See {@link #getUri()}
+   * @param position     See {@link #getPosition()}
+   * @param async        See {@link #isAsync()}
+   * @param defer        See {@link #isDefer()}
+   * @param crossorigin  See {@link #getCrossorigin()}
+   */
+  public static Script of(String src, Position position, boolean async, boolean defer, String crossorigin) {
+    Script script = new Script(src, position, async, defer, crossorigin);
+    return interned.intern(script, script);
+  }
+
+  /**
+   * Gets the canonical script with the given src and default attributes.
+   * When already in use, this is found by src without creating a new script.
+   *
+   * @param src  See {@link #getUri()}
+   *
+   * @see  #of(java.lang.String, com.aoapps.web.resources.registry.Script.Position, boolean, boolean, java.lang.String)
+   */
+  public static Script of(String src) {
+    Script script = internedBySrc.get(src);
+    if (script == null) {
+      script = of(src, Position.DEFAULT, false, false, null);
+      script = internedBySrc.intern(script.getUri(), script);
+    }
+    return script;
+  }
+
   private final Position position;
   private final boolean async;
   private final boolean defer;
   private final String crossorigin;
 
+  /**
+   * The hash code, which does not depend on identity hash codes so that it is
+   * consistent after deserialization.
+   */
+  private final transient int hash;
+
+  /**
+   * The escaped attributes, created when first {@linkplain HtmlRenderer rendered}.
+   */
+  private transient HtmlRenderer.Tag htmlTag;
+
   /**
    * Creates a new script.
    *
@@ -199,10 +251,23 @@ public final class Script extends Resource<Script> implements Comparable<Script>
    */
   public Script(String src, Position position, boolean async, boolean defer, String crossorigin) {
     super(src);
+    if (position == null) {
+      throw new NullArgumentException("position");
+    }
     this.position = position;
     this.async = async;
     this.defer = defer;
     this.crossorigin = Strings.trimNullIfEmpty(crossorigin);
+    int h = Objects.hashCode(getUri());
+    h = h * 31 + this.position.ordinal();
+    h = h * 31 + Objects.hashCode(this.crossorigin);
+    if (async) {
+      h += 1;
+    }
+    if (defer) {
+      h += 2;
+    }
+    this.hash = h;
   }
 
   /**
@@ -240,14 +305,26 @@ public final class Script extends Resource<Script> implements Comparable<Script>
     return sb.toString();
   }
 
+  /**
+   * Resolves to the {@linkplain #of(java.lang.String, com.aoapps.web.resources.registry.Script.Position, boolean, boolean, java.lang.String) canonical script},
+   * which also restores the cached hash code.
+   */
+  private Object readResolve() {
+    return of(getUri(), position, async, defer, crossorigin);
+  }
+
   @Override
   public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
     if (!(obj instanceof Script)) {
       return false;
     }
     Script other = (Script) obj;
     return
-        position == other.position
+        hash == other.hash
+            && position == other.position
             && async == other.async
             && defer == other.defer
             && Objects.equals(getUri(), other.getUri())
@@ -256,15 +333,6 @@ public final class Script extends Resource<Script> implements Comparable<Script>
 
   @Override
   public int hashCode() {
-    int hash = Objects.hashCode(getUri());
-    hash = hash * 31 + position.hashCode();
-    hash = hash * 31 + Objects.hashCode(crossorigin);
-    if (async) {
-      hash += 1;
-    }
-    if (defer) {
-      hash += 2;
-    }
     return hash;
   }
 
@@ -305,4 +373,27 @@ public final class Script extends Resource<Script> implements Comparable<Script>
   public String getCrossorigin() {
     return crossorigin;
   }
+
+  /**
+   * Gets the escaped attributes for {@link HtmlRenderer}, creating them on first use.
+   * Races are benign since equal attributes are always created.
+   */
+  HtmlRenderer.Tag getHtmlTag() {
+    HtmlRenderer.Tag tag = htmlTag;
+    if (tag == null) {
+      StringBuilder attributes = new StringBuilder();
+      if (async) {
+        attributes.append(" async=\"async\"");
+      }
+      if (defer) {
+        attributes.append(" defer=\"defer\"");
+      }
+      if (crossorigin != null) {
+        attributes.append(" crossorigin=\"").append(HtmlRenderer.encodeAttribute(crossorigin)).append('"');
+      }
+      tag = new HtmlRenderer.Tag(getUri(), attributes.toString());
+      htmlTag = tag;
+    }
+    return tag;
+  }
 }
@@ -1,6 +1,6 @@
 /*
  * ao-web-resources-registry - Central registry for web resource management.
- * Copyright (C) 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,9 +23,18 @@
 
 package com.aoapps.web.resources.registry;
 
+import com.aoapps.collections.AoCollections;
 import com.aoapps.lang.Iterables;
 import com.aoapps.lang.NullArgumentException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * A partition with some extra convenience overloads for {@link Script}.
@@ -36,6 +45,53 @@ public final class Scripts extends Resources<Script> {
 
   private static final long serialVersionUID = 1L;
 
+  private static final Script.Position[] positions = Script.Position.values();
+
+  /**
+   * Partitions the sorted scripts by position in a single pass, preserving the sorted order.
+   * Created once per sort.
+   */
+  private static Map<Script.Position, Set<Script>> partition(Set<Script> sorted) {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Set<Script>[] byPosition = new Set[positions.length];
+    Script.Position single = null;
+    boolean multiple = false;
+    for (Script script : sorted) {
+      Script.Position position = script.getPosition();
+      if (single == null) {
+        single = position;
+      } else if (position != single) {
+        multiple = true;
+        break;
+      }
+    }
+    if (multiple) {
+      for (Script script : sorted) {
+        int ordinal = script.getPosition().ordinal();
+        Set<Script> set = byPosition[ordinal];
+        if (set == null) {
+          set = new LinkedHashSet<>();
+          byPosition[ordinal] = set;
+        }
+        set.add(script);
+      }
+    } else if (single != null) {
+      // Share the full sort when all scripts are in the same position
+      byPosition[single.ordinal()] = sorted;
+    }
+    Map<Script.Position, Set<Script>> partitions = new EnumMap<>(Script.Position.class);
+    for (Script.Position position : positions) {
+      Set<Script> set = byPosition[position.ordinal()];
+      if (set == null) {
+        set = Collections.emptySet();
+      } else if (set != sorted) {
+        set = AoCollections.optimalUnmodifiableSet(set);
+      }
+      partitions.put(position, set);
+    }
+    return partitions;
+  }
+
   Scripts() {
     // Do nothing
   }
@@ -55,13 +111,53 @@ public final class Scripts extends Resources<Script> {
   }
 
   /**
-   * Gets a deep copy of these resources.
+   * Gets a copy of these resources.  The copy shares the immutable state of
+   * these resources until either is changed.
    */
   @Override
   protected Scripts copy() {
     return new Scripts(this);
   }
 
+  /**
+   * Uses the {@linkplain CompactForm compact form}.
+   */
+  private Object writeReplace() {
+    return new CompactForm(CompactForm.SCRIPTS, this);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The {@linkplain #getSorted(com.aoapps.web.resources.registry.Script.Position) sorted scripts for each position}
+   * are also created.</p>
+   */
+  @Override
+  public Scripts freeze() throws IllegalStateException {
+    super.freeze();
+    getSorted(Script.Position.DEFAULT);
+    return this;
+  }
+
+  /**
+   * Gets the sorted scripts for the given position, in the order of {@link #getSorted()}.
+   *
+   * <p>The scripts of all positions are partitioned once per sort, and the
+   * partitions are shared by all scripts that share the sort, including copies
+   * and cached unions.</p>
+   *
+   * @return  An unmodifiable set, in the sorted order.
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   */
+  public Set<Script> getSorted(Script.Position position) throws IllegalStateException {
+    if (position == null) {
+      throw new NullArgumentException("position");
+    }
+    Map<Script.Position, Set<Script>> partitions = getSortedViews(Scripts::partition);
+    return partitions.get(position);
+  }
+
   /**
    * Gets a the union of multiple groups.
    */
@@ -78,6 +174,12 @@ public final class Scripts extends Resources<Script> {
     return new Scripts(others);
   }
 
+  @Override
+  public Scripts batch(Consumer<? super Mutator<Script>> changes) throws IllegalStateException {
+    super.batch(changes);
+    return this;
+  }
+
   @Override
   public Scripts add(Iterable<? extends Script> scripts) {
     super.add(scripts);
@@ -97,33 +199,37 @@ public final class Scripts extends Resources<Script> {
     if (src == null) {
       throw new NullArgumentException("src");
     }
-    return add(new Script(src));
+    return add(Script.of(src));
   }
 
   /**
-   * Adds new scripts, if not already present.
+   * Adds new scripts, if not already present, in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Scripts add(Iterables.String<?> srcs) {
     if (srcs != null) {
-      for (String src : srcs) {
-        if (src != null) {
-          add(src);
+      batch(mutator -> {
+        for (String src : srcs) {
+          if (src != null) {
+            mutator.add(Script.of(src));
+          }
         }
-      }
+      });
     }
     return this;
   }
 
   /**
-   * Adds new scripts, if not already present.
+   * Adds new scripts, if not already present, in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Scripts add(String ... srcs) {
     if (srcs != null) {
-      for (String src : srcs) {
-        if (src != null) {
-          add(src);
+      batch(mutator -> {
+        for (String src : srcs) {
+          if (src != null) {
+            mutator.add(Script.of(src));
+          }
         }
-      }
+      });
     }
     return this;
   }
@@ -145,36 +251,40 @@ public final class Scripts extends Resources<Script> {
    */
   public boolean remove(String src) {
     if (src != null) {
-      return remove(new Script(src));
+      return remove(Script.of(src));
     } else {
       return false;
     }
   }
 
   /**
-   * Removes scripts.
+   * Removes scripts in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Scripts remove(Iterables.String<?> srcs) {
     if (srcs != null) {
-      for (String src : srcs) {
-        if (src != null) {
-          remove(src);
+      batch(mutator -> {
+        for (String src : srcs) {
+          if (src != null) {
+            mutator.remove(Script.of(src));
+          }
         }
-      }
+      });
     }
     return this;
   }
 
   /**
-   * Removes scripts.
+   * Removes scripts in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Scripts remove(String ... srcs) {
     if (srcs != null) {
-      for (String src : srcs) {
-        if (src != null) {
-          remove(src);
+      batch(mutator -> {
+        for (String src : srcs) {
+          if (src != null) {
+            mutator.remove(Script.of(src));
+          }
         }
-      }
+      });
     }
     return this;
   }
@@ -182,7 +292,8 @@ public final class Scripts extends Resources<Script> {
   /**
    * {@inheritDoc}
    *
-   * <p>The before script must have a position that is before or equal to the after script.</p>
+   * <p>The before script must have a position that is before or equal to the after script.
+   * This is also checked for the scripts matched by URI when sorted.</p>
    */
   @Override
   protected void checkOrdering(Script before, Script after) {
@@ -253,8 +364,8 @@ public final class Scripts extends Resources<Script> {
     }
     return addOrdering(
         required,
-        new Script(beforeSrc),
-        new Script(afterSrc)
+        Script.of(beforeSrc),
+        Script.of(afterSrc)
     );
   }
 
@@ -271,19 +382,18 @@ public final class Scripts extends Resources<Script> {
    * Adds ordering constraints between multiple scripts, if not already present.
    *
    * <p>Ordering may not violate {@link Script.Position}.</p>
+   *
+   * @see  #addOrdering(boolean, java.lang.Iterable)
    */
   public Scripts addOrdering(boolean required, Iterables.String<?> srcs) {
     if (srcs != null) {
-      Script lastScript = null;
+      List<Script> scripts = new ArrayList<>();
       for (String src : srcs) {
         if (src != null) {
-          Script script = new Script(src);
-          if (lastScript != null) {
-            addOrdering(required, lastScript, script);
-          }
-          lastScript = script;
+          scripts.add(Script.of(src));
         }
       }
+      addOrdering(required, scripts);
     }
     return this;
   }
@@ -301,19 +411,18 @@ public final class Scripts extends Resources<Script> {
    * Adds ordering constraints between multiple scripts, if not already present.
    *
    * <p>Ordering may not violate {@link Script.Position}.</p>
+   *
+   * @see  #addOrdering(boolean, java.lang.Iterable)
    */
   public Scripts addOrdering(boolean required, String ... srcs) {
     if (srcs != null) {
-      Script lastScript = null;
+      List<Script> scripts = new ArrayList<>();
       for (String src : srcs) {
         if (src != null) {
-          Script script = new Script(src);
-          if (lastScript != null) {
-            addOrdering(required, lastScript, script);
-          }
-          lastScript = script;
+          scripts.add(Script.of(src));
         }
       }
+      addOrdering(required, scripts);
     }
     return this;
   }
@@ -358,8 +467,8 @@ public final class Scripts extends Resources<Script> {
     if (beforeSrc != null && afterSrc != null) {
       return removeOrdering(
           required,
-          new Script(beforeSrc),
-          new Script(afterSrc)
+          Script.of(beforeSrc),
+          Script.of(afterSrc)
       );
     } else {
       return false;
@@ -374,20 +483,23 @@ public final class Scripts extends Resources<Script> {
   }
 
   /**
-   * Removes ordering constraints between multiple scripts.
+   * Removes ordering constraints between multiple scripts in a single
+   * {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Scripts removeOrdering(boolean required, Iterables.String<?> srcs) {
     if (srcs != null) {
-      Script lastScript = null;
-      for (String src : srcs) {
-        if (src != null) {
-          Script script = new Script(src);
-          if (lastScript != null) {
-            removeOrdering(required, lastScript, script);
+      batch(mutator -> {
+        Script lastScript = null;
+        for (String src : srcs) {
+          if (src != null) {
+            Script script = Script.of(src);
+            if (lastScript != null) {
+              mutator.removeOrdering(required, lastScript, script);
+            }
+            lastScript = script;
           }
-          lastScript = script;
         }
-      }
+      });
     }
     return this;
   }
@@ -400,20 +512,23 @@ public final class Scripts extends Resources<Script> {
   }
 
   /**
-   * Removes ordering constraints between multiple scripts.
+   * Removes ordering constraints between multiple scripts in a single
+   * {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Scripts removeOrdering(boolean required, String ... srcs) {
     if (srcs != null) {
-      Script lastScript = null;
-      for (String src : srcs) {
-        if (src != null) {
-          Script script = new Script(src);
-          if (lastScript != null) {
-            removeOrdering(required, lastScript, script);
+      batch(mutator -> {
+        Script lastScript = null;
+        for (String src : srcs) {
+          if (src != null) {
+            Script script = Script.of(src);
+            if (lastScript != null) {
+              mutator.removeOrdering(required, lastScript, script);
+            }
+            lastScript = script;
           }
-          lastScript = script;
         }
-      }
+      });
     }
     return this;
   }
@@ -1,6 +1,6 @@
 /*
  * ao-web-resources-registry - Central registry for web resource management.
- * Copyright (C) 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -208,9 +208,12 @@ public final class Style extends Resource<Style> implements Comparable<Style> {
       return this;
     }
 
+    /**
+     * Builds the {@linkplain Style#of(java.lang.String, java.lang.String, com.aoapps.web.resources.registry.Style.Direction, java.lang.String, boolean) canonical style}.
+     */
     @Override
     public Style build() {
-      return new Style(
+      return of(
           uri,
           media,
           direction,
@@ -226,11 +229,65 @@ public final class Style extends Resource<Style> implements Comparable<Style> {
 
   private static final long serialVersionUID = 1L;
 
+  private static final Interner<Style, Style> interned = new Interner<>();
+
+  private static final Interner<String, Style> internedByHref = new Interner<>();
+
+  /**
+   * Gets the canonical style with the given attributes.  Equal styles are shared
+   * while in use, so repeated registrations do not retain duplicates and lookups
+   * may match by identity.
+   *
+   * @param href         See {@link #getUri()}
+   * @param media        See {@link #getMedia()}
+   * @param direction    See {@link #getDirection()}
+   * @param crossorigin  See {@link #getCrossorigin()}
+   * @param disabled     See {@link #isDisabled()}
+   */
+  public static Style of(
+      String href,
+      String media,
+      Direction direction,
+      String crossorigin,
+      boolean disabled
+  ) {
+    Style style = new Style(href, media, direction, crossorigin, disabled);
+    return interned.intern(style, style);
+  }
+
+  /**
+   * Gets the canonical style with the given href and default attributes.
+   * When already in use, this is found by href without creating a new style.
+   *
+   * @param href  See {@link #getUri()}
+   *
+   * @see  #of(java.lang.String, java.lang.String, com.aoapps.web.resources.registry.Style.Direction, java.lang.String, boolean)
+   */
+  public static Style of(String href) {
+    Style style = internedByHref.get(href);
+    if (style == null) {
+      style = of(href, null, null, null, false);
+      style = internedByHref.intern(style.getUri(), style);
+    }
+    return style;
+  }
+
   private final String media;
   private final Direction direction;
   private final String crossorigin;
   private final boolean disabled;
 
+  /**
+   * The hash code, which does not depend on identity hash codes so that it is
+   * consistent after deserialization.
+   */
+  private final transient int hash;
+
+  /**
+   * The escaped attributes, created when first {@linkplain HtmlRenderer rendered}.
+   */
+  private transient HtmlRenderer.Tag htmlTag;
+
   /**
    * Creates a new style.
    *
@@ -252,6 +309,14 @@ public final class Style extends Resource<Style> implements Comparable<Style> {
     this.direction = direction;
     this.crossorigin = Strings.trimNullIfEmpty(crossorigin);
     this.disabled = disabled;
+    int h = Objects.hashCode(getUri());
+    h = h * 31 + Objects.hashCode(this.media);
+    h = h * 31 + (direction == null ? 0 : (direction.ordinal() + 1));
+    h = h * 31 + Objects.hashCode(this.crossorigin);
+    if (disabled) {
+      h += 1;
+    }
+    this.hash = h;
   }
 
   /**
@@ -309,14 +374,26 @@ public final class Style extends Resource<Style> implements Comparable<Style> {
     }
   }
 
+  /**
+   * Resolves to the {@linkplain #of(java.lang.String, java.lang.String, com.aoapps.web.resources.registry.Style.Direction, java.lang.String, boolean) canonical style},
+   * which also restores the cached hash code.
+   */
+  private Object readResolve() {
+    return of(getUri(), media, direction, crossorigin, disabled);
+  }
+
   @Override
   public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
     if (!(obj instanceof Style)) {
       return false;
     }
     Style other = (Style) obj;
     return
-        disabled == other.disabled
+        hash == other.hash
+            && disabled == other.disabled
             && direction == other.direction
             && Objects.equals(getUri(), other.getUri())
             && Objects.equals(media, other.media)
@@ -325,13 +402,6 @@ public final class Style extends Resource<Style> implements Comparable<Style> {
 
   @Override
   public int hashCode() {
-    int hash = Objects.hashCode(getUri());
-    hash = hash * 31 + Objects.hashCode(media);
-    hash = hash * 31 + Objects.hashCode(direction);
-    hash = hash * 31 + Objects.hashCode(crossorigin);
-    if (disabled) {
-      hash += 1;
-    }
     return hash;
   }
 
@@ -374,4 +444,27 @@ public final class Style extends Resource<Style> implements Comparable<Style> {
   public boolean isDisabled() {
     return disabled;
   }
+
+  /**
+   * Gets the escaped attributes for {@link HtmlRenderer}, creating them on first use.
+   * Races are benign since equal attributes are always created.
+   */
+  HtmlRenderer.Tag getHtmlTag() {
+    HtmlRenderer.Tag tag = htmlTag;
+    if (tag == null) {
+      StringBuilder attributes = new StringBuilder();
+      if (media != null) {
+        attributes.append(" media=\"").append(HtmlRenderer.encodeAttribute(media)).append('"');
+      }
+      if (crossorigin != null) {
+        attributes.append(" crossorigin=\"").append(HtmlRenderer.encodeAttribute(crossorigin)).append('"');
+      }
+      if (disabled) {
+        attributes.append(" disabled=\"disabled\"");
+      }
+      tag = new HtmlRenderer.Tag(getUri(), attributes.toString());
+      htmlTag = tag;
+    }
+    return tag;
+  }
 }
@@ -1,6 +1,6 @@
 /*
  * ao-web-resources-registry - Central registry for web resource management.
- * Copyright (C) 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,9 +23,15 @@
 
 package com.aoapps.web.resources.registry;
 
+import com.aoapps.collections.AoCollections;
 import com.aoapps.lang.Iterables;
 import com.aoapps.lang.NullArgumentException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * A partition with some extra convenience overloads for {@link Style}.
@@ -36,6 +42,41 @@ public final class Styles extends Resources<Style> {
 
   private static final long serialVersionUID = 1L;
 
+  /**
+   * The sorted styles for each direction, created once per sort.
+   */
+  private static final class DirectionViews {
+
+    private final Set<Style> ltr;
+    private final Set<Style> rtl;
+
+    private DirectionViews(Set<Style> sorted) {
+      boolean hasLtr = false;
+      boolean hasRtl = false;
+      for (Style style : sorted) {
+        Style.Direction direction = style.getDirection();
+        if (direction == Style.Direction.LTR) {
+          hasLtr = true;
+        } else if (direction == Style.Direction.RTL) {
+          hasRtl = true;
+        }
+      }
+      // Share the full sort when there is nothing to filter
+      ltr = hasRtl ? filter(sorted, Style.Direction.RTL) : sorted;
+      rtl = hasLtr ? filter(sorted, Style.Direction.LTR) : sorted;
+    }
+
+    private static Set<Style> filter(Set<Style> sorted, Style.Direction exclude) {
+      Set<Style> filtered = new LinkedHashSet<>(sorted.size() * 4 / 3 + 1);
+      for (Style style : sorted) {
+        if (style.getDirection() != exclude) {
+          filtered.add(style);
+        }
+      }
+      return AoCollections.optimalUnmodifiableSet(filtered);
+    }
+  }
+
   Styles() {
     // Do nothing
   }
@@ -55,13 +96,54 @@ public final class Styles extends Resources<Style> {
   }
 
   /**
-   * Gets a deep copy of these resources.
+   * Gets a copy of these resources.  The copy shares the immutable state of
+   * these resources until either is changed.
    */
   @Override
   protected Styles copy() {
     return new Styles(this);
   }
 
+  /**
+   * Uses the {@linkplain CompactForm compact form}.
+   */
+  private Object writeReplace() {
+    return new CompactForm(CompactForm.STYLES, this);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The {@linkplain #getSorted(com.aoapps.web.resources.registry.Style.Direction) sorted styles for each direction}
+   * are also created.</p>
+   */
+  @Override
+  public Styles freeze() throws IllegalStateException {
+    super.freeze();
+    getSorted(Style.Direction.LTR);
+    return this;
+  }
+
+  /**
+   * Gets the sorted styles that apply to the given direction: the styles
+   * without a {@linkplain Style#getDirection() direction} along with the styles
+   * of the given direction, in the order of {@link #getSorted()}.
+   *
+   * <p>The filtered sets for both directions are created once per sort, and are
+   * shared by all styles that share the sort, including copies and cached unions.</p>
+   *
+   * @return  An unmodifiable set, in the sorted order.
+   *
+   * @throws  IllegalStateException  when a required resource is missing or the ordering constraints contain a cycle
+   */
+  public Set<Style> getSorted(Style.Direction direction) throws IllegalStateException {
+    if (direction == null) {
+      throw new NullArgumentException("direction");
+    }
+    DirectionViews views = getSortedViews(DirectionViews::new);
+    return direction == Style.Direction.RTL ? views.rtl : views.ltr;
+  }
+
   /**
    * Gets a the union of multiple groups.
    */
@@ -78,6 +160,12 @@ public final class Styles extends Resources<Style> {
     return new Styles(others);
   }
 
+  @Override
+  public Styles batch(Consumer<? super Mutator<Style>> changes) throws IllegalStateException {
+    super.batch(changes);
+    return this;
+  }
+
   @Override
   public Styles add(Iterable<? extends Style> styles) {
     super.add(styles);
@@ -97,33 +185,37 @@ public final class Styles extends Resources<Style> {
     if (href == null) {
       throw new NullArgumentException("href");
     }
-    return add(new Style(href));
+    return add(Style.of(href));
   }
 
   /**
-   * Adds new styles, if not already present.
+   * Adds new styles, if not already present, in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Styles add(Iterables.String<?> hrefs) {
     if (hrefs != null) {
-      for (String href : hrefs) {
-        if (href != null) {
-          add(href);
+      batch(mutator -> {
+        for (String href : hrefs) {
+          if (href != null) {
+            mutator.add(Style.of(href));
+          }
         }
-      }
+      });
     }
     return this;
   }
 
   /**
-   * Adds new styles, if not already present.
+   * Adds new styles, if not already present, in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Styles add(String ... hrefs) {
     if (hrefs != null) {
-      for (String href : hrefs) {
-        if (href != null) {
-          add(href);
+      batch(mutator -> {
+        for (String href : hrefs) {
+          if (href != null) {
+            mutator.add(Style.of(href));
+          }
         }
-      }
+      });
     }
     return this;
   }
@@ -145,36 +237,40 @@ public final class Styles extends Resources<Style> {
    */
   public boolean remove(String href) {
     if (href != null) {
-      return remove(new Style(href));
+      return remove(Style.of(href));
     } else {
       return false;
     }
   }
 
   /**
-   * Removes styles.
+   * Removes styles in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Styles remove(Iterables.String<?> hrefs) {
     if (hrefs != null) {
-      for (String href : hrefs) {
-        if (href != null) {
-          remove(href);
+      batch(mutator -> {
+        for (String href : hrefs) {
+          if (href != null) {
+            mutator.remove(Style.of(href));
+          }
         }
-      }
+      });
     }
     return this;
   }
 
   /**
-   * Removes styles.
+   * Removes styles in a single {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Styles remove(String ... hrefs) {
     if (hrefs != null) {
-      for (String href : hrefs) {
-        if (href != null) {
-          remove(href);
+      batch(mutator -> {
+        for (String href : hrefs) {
+          if (href != null) {
+            mutator.remove(Style.of(href));
+          }
         }
-      }
+      });
     }
     return this;
   }
@@ -215,8 +311,8 @@ public final class Styles extends Resources<Style> {
     }
     return addOrdering(
         required,
-        new Style(beforeHref),
-        new Style(afterHref)
+        Style.of(beforeHref),
+        Style.of(afterHref)
     );
   }
 
@@ -229,19 +325,18 @@ public final class Styles extends Resources<Style> {
 
   /**
    * Adds ordering constraints between multiple styles, if not already present.
+   *
+   * @see  #addOrdering(boolean, java.lang.Iterable)
    */
   public Styles addOrdering(boolean required, Iterables.String<?> hrefs) {
     if (hrefs != null) {
-      Style lastStyle = null;
+      List<Style> styles = new ArrayList<>();
       for (String href : hrefs) {
         if (href != null) {
-          Style style = new Style(href);
-          if (lastStyle != null) {
-            addOrdering(required, lastStyle, style);
-          }
-          lastStyle = style;
+          styles.add(Style.of(href));
         }
       }
+      addOrdering(required, styles);
     }
     return this;
   }
@@ -255,19 +350,18 @@ public final class Styles extends Resources<Style> {
 
   /**
    * Adds ordering constraints between multiple styles, if not already present.
+   *
+   * @see  #addOrdering(boolean, java.lang.Iterable)
    */
   public Styles addOrdering(boolean required, String ... hrefs) {
     if (hrefs != null) {
-      Style lastStyle = null;
+      List<Style> styles = new ArrayList<>();
       for (String href : hrefs) {
         if (href != null) {
-          Style style = new Style(href);
-          if (lastStyle != null) {
-            addOrdering(required, lastStyle, style);
-          }
-          lastStyle = style;
+          styles.add(Style.of(href));
         }
       }
+      addOrdering(required, styles);
     }
     return this;
   }
@@ -310,8 +404,8 @@ public final class Styles extends Resources<Style> {
     if (beforeHref != null && afterHref != null) {
       return removeOrdering(
           required,
-          new Style(beforeHref),
-          new Style(afterHref)
+          Style.of(beforeHref),
+          Style.of(afterHref)
       );
     } else {
       return false;
@@ -326,20 +420,23 @@ public final class Styles extends Resources<Style> {
   }
 
   /**
-   * Removes ordering constraints between multiple styles.
+   * Removes ordering constraints between multiple styles in a single
+   * {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Styles removeOrdering(boolean required, Iterables.String<?> hrefs) {
     if (hrefs != null) {
-      Style lastStyle = null;
-      for (String href : hrefs) {
-        if (href != null) {
-          Style style = new Style(href);
-          if (lastStyle != null) {
-            removeOrdering(required, lastStyle, style);
+      batch(mutator -> {
+        Style lastStyle = null;
+        for (String href : hrefs) {
+          if (href != null) {
+            Style style = Style.of(href);
+            if (lastStyle != null) {
+              mutator.removeOrdering(required, lastStyle, style);
+            }
+            lastStyle = style;
           }
-          lastStyle = style;
         }
-      }
+      });
     }
     return this;
   }
@@ -352,20 +449,23 @@ public final class Styles extends Resources<Style> {
   }
 
   /**
-   * Removes ordering constraints between multiple styles.
+   * Removes ordering constraints between multiple styles in a single
+   * {@linkplain #batch(java.util.function.Consumer) batch}.
    */
   public Styles removeOrdering(boolean required, String ... hrefs) {
     if (hrefs != null) {
-      Style lastStyle = null;
-      for (String href : hrefs) {
-        if (href != null) {
-          Style style = new Style(href);
-          if (lastStyle != null) {
-            removeOrdering(required, lastStyle, style);
+      batch(mutator -> {
+        Style lastStyle = null;
+        for (String href : hrefs) {
+          if (href != null) {
+            Style style = Style.of(href);
+            if (lastStyle != null) {
+              mutator.removeOrdering(required, lastStyle, style);
+            }
+            lastStyle = style;
           }
-          lastStyle = style;
         }
-      }
+      });
     }
     return this;
   }
@@ -0,0 +1,659 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import com.aoapps.collections.AoCollections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The result of a topological sort, along with the bookkeeping needed to apply
+ * single resource and single ordering changes in-place.
+ *
+ * <p>Of all the orders that satisfy the ordering constraints, the sort is the one
+ * that is first by {@linkplain Resource#compareTo(com.aoapps.web.resources.registry.Resource) natural ordering},
+ * compared resource by resource.  At each position, the resource added is the first
+ * in natural ordering of those with all prerequisites already added.  Without any
+ * ordering constraints, this is the natural ordering itself.</p>
+ *
+ * <p>The order is kept in an immutable balanced tree, with each resource given a
+ * label that increases through the order.  A single change creates a new order
+ * sharing all but a logarithmic number of nodes with this one, and positions are
+ * compared by looking up the labels.</p>
+ *
+ * <p>Instances are immutable, other than the {@linkplain #views cached views}, and
+ * may be shared between copies of {@link Resources}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class TopologicalOrder<R extends Resource<R> & Comparable<? super R>> {
+
+  private static final String EOL = System.lineSeparator();
+
+  /**
+   * The spacing between the labels of adjacent resources after a full sort.  Up to
+   * 32 resources may be added between the same two resources before the labels
+   * must be reassigned.
+   */
+  private static final long GAP = 1L << 32;
+
+  @SuppressWarnings("unchecked")
+  private static <R extends Resource<R> & Comparable<? super R>> int compare(Object[] resources, int a, int b) {
+    Comparable<? super R> resource = (R) resources[a];
+    return resource.compareTo((R) resources[b]);
+  }
+
+  private static <R extends Resource<R> & Comparable<? super R>> int compare(R a, R b) {
+    Comparable<? super R> resource = a;
+    return resource.compareTo(b);
+  }
+
+  /**
+   * Moves the resource at the given heap index down to restore the heap.
+   */
+  private static <R extends Resource<R> & Comparable<? super R>> void siftDown(
+      Object[] resources,
+      int[] heap,
+      int heapSize,
+      int index
+  ) {
+    int id = heap[index];
+    while (true) {
+      int child = index * 2 + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && TopologicalOrder.<R>compare(resources, heap[child + 1], heap[child]) < 0) {
+        child++;
+      }
+      if (TopologicalOrder.<R>compare(resources, heap[child], id) >= 0) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = id;
+  }
+
+  /**
+   * Moves the resource at the given heap index up to restore the heap.
+   */
+  private static <R extends Resource<R> & Comparable<? super R>> void siftUp(
+      Object[] resources,
+      int[] heap,
+      int index
+  ) {
+    int id = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (TopologicalOrder.<R>compare(resources, heap[parent], id) <= 0) {
+        break;
+      }
+      heap[index] = heap[parent];
+      index = parent;
+    }
+    heap[index] = id;
+  }
+
+  /**
+   * Performs a full sort.
+   *
+   * <p>Each resource is given an id by the iteration order of {@code resources}, with
+   * its constraints stored in compressed <code>int</code> arrays.  The resources without
+   * remaining prerequisites are kept in a heap by natural ordering, so no separate
+   * natural sort is needed.</p>
+   *
+   * <p>Each side of an ordering constraint matches all the resources with its
+   * {@linkplain Resources#uriKey(com.aoapps.web.resources.registry.Resource) URI},
+   * so a constraint declared by URI alone orders the resources with any attributes.
+   * Each matched pair is checked again, since it may differ from the declared pair.</p>
+   *
+   * @param  resources       The set of all resources
+   * @param  ordering        Ordering map: <code>after -&gt; Set&lt;Before&gt;</code>
+   * @param  resourcesByUri  The resources, by URI
+   * @param  checkOrdering   Checks each matched pair of resources, throwing {@link IllegalArgumentException}
+   *                         when the ordering is not allowed
+   *
+   * @throws  IllegalStateException  when a required resource is missing, a matched pair of resources
+   *                                 may not be ordered, or the ordering contains a cycle
+   */
+  static <R extends Resource<R> & Comparable<? super R>> TopologicalOrder<R> sort(
+      Collection<R> resources,
+      Map<R, ? extends Collection<Resources.Before<R>>> ordering,
+      Map<Object, ? extends Collection<R>> resourcesByUri,
+      BiConsumer<? super R, ? super R> checkOrdering
+  ) throws IllegalStateException {
+    final Object[] byId = resources.toArray();
+    final int size = byId.length;
+    Map<R, Integer> ids = AoCollections.newHashMap(size);
+    for (int i = 0; i < size; i++) {
+      @SuppressWarnings("unchecked")
+      R resource = (R) byId[i];
+      ids.put(resource, i);
+    }
+    // Find the prerequisites of each resource, while making sure all required are found
+    int maxEdges = 0;
+    for (Map.Entry<R, ? extends Collection<Resources.Before<R>>> entry : ordering.entrySet()) {
+      Collection<R> afters = resourcesByUri.get(Resources.uriKey(entry.getKey()));
+      for (Resources.Before<R> before : entry.getValue()) {
+        Collection<R> befores = resourcesByUri.get(Resources.uriKey(before.getBefore()));
+        if (befores == null) {
+          if (before.isRequired()) {
+            throw new IllegalStateException(
+                "Required resource not found:\n"
+                    + "    before = " + before.getBefore() + "\n"
+                    + "    after  = " + entry.getKey()
+            );
+          }
+        } else if (afters != null) {
+          maxEdges += befores.size() * afters.size();
+        }
+      }
+    }
+    int[] edgeAfters = new int[maxEdges];
+    int[] edgeBefores = new int[maxEdges];
+    int edgeCount = 0;
+    if (maxEdges != 0) {
+      for (Map.Entry<R, ? extends Collection<Resources.Before<R>>> entry : ordering.entrySet()) {
+        Collection<R> afters = resourcesByUri.get(Resources.uriKey(entry.getKey()));
+        if (afters != null) {
+          for (Resources.Before<R> before : entry.getValue()) {
+            Collection<R> befores = resourcesByUri.get(Resources.uriKey(before.getBefore()));
+            if (befores != null) {
+              for (R b : befores) {
+                int beforeId = ids.get(b);
+                for (R a : afters) {
+                  try {
+                    checkOrdering.accept(b, a);
+                  } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException(
+                        "Ordering not allowed:\n"
+                            + "    before = " + b + "\n"
+                            + "    after  = " + a,
+                        e
+                    );
+                  }
+                  edgeAfters[edgeCount] = ids.get(a);
+                  edgeBefores[edgeCount] = beforeId;
+                  edgeCount++;
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    // Compressed adjacency: the resources after id i are at edges[offsets[i]] up to edges[offsets[i + 1]]
+    int[] offsets = new int[size + 1];
+    int[] inDegrees = new int[size];
+    for (int i = 0; i < edgeCount; i++) {
+      offsets[edgeBefores[i] + 1]++;
+      inDegrees[edgeAfters[i]]++;
+    }
+    for (int i = 0; i < size; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] edges = new int[edgeCount];
+    int[] cursors = Arrays.copyOf(offsets, size);
+    for (int i = 0; i < edgeCount; i++) {
+      edges[cursors[edgeBefores[i]]++] = edgeAfters[i];
+    }
+    // Kahn's algorithm, always adding the first available in natural ordering
+    int[] heap = new int[size];
+    int heapSize = 0;
+    for (int i = 0; i < size; i++) {
+      if (inDegrees[i] == 0) {
+        heap[heapSize++] = i;
+      }
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      TopologicalOrder.<R>siftDown(byId, heap, heapSize, i);
+    }
+    Object[] sorted = new Object[size];
+    int sortedSize = 0;
+    while (heapSize > 0) {
+      int id = heap[0];
+      heapSize--;
+      if (heapSize > 0) {
+        heap[0] = heap[heapSize];
+        TopologicalOrder.<R>siftDown(byId, heap, heapSize, 0);
+      }
+      @SuppressWarnings("unchecked")
+      R resource = (R) byId[id];
+      sorted[sortedSize++] = resource;
+      for (int i = offsets[id], end = offsets[id + 1]; i < end; i++) {
+        int after = edges[i];
+        if (--inDegrees[after] == 0) {
+          heap[heapSize] = after;
+          TopologicalOrder.<R>siftUp(byId, heap, heapSize++);
+        }
+      }
+    }
+    if (sortedSize < size) {
+      throw new IllegalStateException(describeCycle(byId, inDegrees, edgeAfters, edgeBefores, edgeCount));
+    }
+    return new TopologicalOrder<>(sorted);
+  }
+
+  /**
+   * Describes a cycle among the resources not added by the sort.  Each of these
+   * resources has at least one prerequisite that was also not added, so following
+   * prerequisites must eventually repeat.  The first in natural ordering is chosen
+   * at each step so the description does not depend on hash ordering.
+   */
+  private static <R extends Resource<R> & Comparable<? super R>> String describeCycle(
+      Object[] byId,
+      int[] inDegrees,
+      int[] edgeAfters,
+      int[] edgeBefores,
+      int edgeCount
+  ) {
+    final int size = byId.length;
+    int start = -1;
+    for (int i = 0; i < size; i++) {
+      if (inDegrees[i] != 0 && (start == -1 || TopologicalOrder.<R>compare(byId, i, start) < 0)) {
+        start = i;
+      }
+    }
+    assert start != -1;
+    int[] steps = new int[size];
+    Arrays.fill(steps, -1);
+    int[] path = new int[size + 1];
+    int length = 0;
+    int id = start;
+    while (steps[id] == -1) {
+      steps[id] = length;
+      path[length++] = id;
+      int next = -1;
+      for (int i = 0; i < edgeCount; i++) {
+        if (edgeAfters[i] == id) {
+          int beforeId = edgeBefores[i];
+          if (
+              inDegrees[beforeId] != 0
+                  && (next == -1 || TopologicalOrder.<R>compare(byId, beforeId, next) < 0)
+          ) {
+            next = beforeId;
+          }
+        }
+      }
+      assert next != -1;
+      id = next;
+    }
+    StringBuilder message = new StringBuilder("Cycle detected:");
+    for (int i = steps[id]; i < length; i++) {
+      message.append(EOL).append("    ").append(byId[path[i]]);
+    }
+    message.append(EOL).append("    ").append(byId[id]);
+    return message.toString();
+  }
+
+  /**
+   * A node of an immutable AVL tree of resources, by label.  Each node also has the
+   * last resource in natural ordering within its subtree, which is used to find where
+   * a resource is added and to check ranges of the order without visiting each resource.
+   */
+  private static final class Node<R extends Resource<R> & Comparable<? super R>> {
+
+    private final long label;
+    private final R resource;
+    private final Node<R> left;
+    private final Node<R> right;
+    private final int height;
+    private final R max;
+
+    private Node(long label, R resource, Node<R> left, Node<R> right) {
+      this.label = label;
+      this.resource = resource;
+      this.left = left;
+      this.right = right;
+      this.height = Math.max(height(left), height(right)) + 1;
+      R m = resource;
+      if (left != null && compare(left.max, m) > 0) {
+        m = left.max;
+      }
+      if (right != null && compare(right.max, m) > 0) {
+        m = right.max;
+      }
+      this.max = m;
+    }
+  }
+
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  /**
+   * Creates a node, rotating when the heights of its subtrees differ by two.
+   */
+  private static <R extends Resource<R> & Comparable<? super R>> Node<R> balance(
+      long label,
+      R resource,
+      Node<R> left,
+      Node<R> right
+  ) {
+    int leftHeight = height(left);
+    int rightHeight = height(right);
+    if (leftHeight > rightHeight + 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node<>(left.label, left.resource, left.left, new Node<>(label, resource, left.right, right));
+      }
+      Node<R> middle = left.right;
+      return new Node<>(
+          middle.label,
+          middle.resource,
+          new Node<>(left.label, left.resource, left.left, middle.left),
+          new Node<>(label, resource, middle.right, right)
+      );
+    }
+    if (rightHeight > leftHeight + 1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node<>(right.label, right.resource, new Node<>(label, resource, left, right.left), right.right);
+      }
+      Node<R> middle = right.left;
+      return new Node<>(
+          middle.label,
+          middle.resource,
+          new Node<>(label, resource, left, middle.left),
+          new Node<>(right.label, right.resource, middle.right, right.right)
+      );
+    }
+    return new Node<>(label, resource, left, right);
+  }
+
+  private static <R extends Resource<R> & Comparable<? super R>> Node<R> insert(Node<R> node, long label, R resource) {
+    if (node == null) {
+      return new Node<>(label, resource, null, null);
+    }
+    if (label < node.label) {
+      return balance(node.label, node.resource, insert(node.left, label, resource), node.right);
+    }
+    assert label > node.label;
+    return balance(node.label, node.resource, node.left, insert(node.right, label, resource));
+  }
+
+  private static <R extends Resource<R> & Comparable<? super R>> Node<R> remove(Node<R> node, long label) {
+    assert node != null;
+    if (label < node.label) {
+      return balance(node.label, node.resource, remove(node.left, label), node.right);
+    }
+    if (label > node.label) {
+      return balance(node.label, node.resource, node.left, remove(node.right, label));
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    Node<R> next = node.right;
+    while (next.left != null) {
+      next = next.left;
+    }
+    return balance(next.label, next.resource, node.left, remove(node.right, next.label));
+  }
+
+  /**
+   * Builds a balanced tree, labeling each resource by its index.
+   */
+  @SuppressWarnings("unchecked")
+  private static <R extends Resource<R> & Comparable<? super R>> Node<R> build(Object[] sorted, int from, int to) {
+    if (from >= to) {
+      return null;
+    }
+    int mid = (from + to) >>> 1;
+    return new Node<>(mid * GAP, (R) sorted[mid], build(sorted, from, mid), build(sorted, mid + 1, to));
+  }
+
+  /**
+   * Copies the resources of a tree into an array, in order.
+   *
+   * @return  the index after the last resource copied
+   */
+  private static int copy(Node<?> node, Object[] array, int index) {
+    while (node != null) {
+      index = copy(node.left, array, index);
+      array[index++] = node.resource;
+      node = node.right;
+    }
+    return index;
+  }
+
+  /**
+   * Checks if any resource with a label in the given range is not before the given
+   * resource in natural ordering.  Subtrees whose last resource in natural ordering is
+   * before the given resource are skipped.
+   *
+   * @param  from  The first label, inclusive
+   * @param  to    The last label, inclusive
+   */
+  private static <R extends Resource<R> & Comparable<? super R>> boolean anyNotBefore(
+      Node<R> node,
+      long from,
+      long to,
+      R resource
+  ) {
+    if (node == null || compare(node.max, resource) < 0) {
+      return false;
+    }
+    if (node.label < from) {
+      return anyNotBefore(node.right, from, to, resource);
+    }
+    if (node.label > to) {
+      return anyNotBefore(node.left, from, to, resource);
+    }
+    return compare(node.resource, resource) >= 0
+        || anyNotBefore(node.left, from, to, resource)
+        || anyNotBefore(node.right, from, to, resource);
+  }
+
+  private final Node<R> root;
+
+  /**
+   * The label of each resource, increasing through the order.
+   */
+  private final PersistentHashMap<R, Long> labels;
+
+  /**
+   * The resources in sorted order, created on first use.  Since this depends only
+   * on the tree, a concurrent creation is harmless.
+   */
+  private volatile Set<R> sorted;
+
+  /**
+   * Views derived from {@link #getSorted()}, created on first use by
+   * {@link Resources#getSortedViews(java.util.function.Function)}.  Since the views
+   * depend only on the sort, a concurrent creation is harmless.
+   */
+  volatile Object views;
+
+  /**
+   * @param  sorted  The resources, in sorted order.  This array is not copied and must not be modified.
+   */
+  private TopologicalOrder(Object[] sorted) {
+    this.root = build(sorted, 0, sorted.length);
+    PersistentHashMap<R, Long> newLabels = PersistentHashMap.empty();
+    for (int i = 0; i < sorted.length; i++) {
+      @SuppressWarnings("unchecked")
+      R resource = (R) sorted[i];
+      newLabels = newLabels.plus(resource, i * GAP);
+    }
+    this.labels = newLabels;
+  }
+
+  private TopologicalOrder(Node<R> root, PersistentHashMap<R, Long> labels) {
+    this.root = root;
+    this.labels = labels;
+  }
+
+  /**
+   * Gets the resources in sorted order.
+   *
+   * @return  An unmodifiable set, in the sorted order.
+   */
+  Set<R> getSorted() {
+    Set<R> s = sorted;
+    if (s == null) {
+      Object[] array = new Object[labels.size()];
+      copy(root, array, 0);
+      s = new ArraySetView<>(array, labels.keySet());
+      sorted = s;
+    }
+    return s;
+  }
+
+  /**
+   * Adds a resource that has no prerequisites and frees no others.
+   * Being always available, the resource is added before the first resource
+   * that follows it in natural ordering.  The resources before are unchanged,
+   * since each was first of those available, and the resources after are
+   * unchanged, since the resource frees no others.
+   *
+   * <p>The resource is labeled halfway between its neighbors.  When there is no
+   * label between, all resources are labeled again.</p>
+   *
+   * @return  the new order
+   */
+  TopologicalOrder<R> added(R resource) {
+    assert !labels.containsKey(resource);
+    // Find the first resource after in natural ordering, along with the resource before it in this order
+    Node<R> previous = null;
+    Node<R> next = null;
+    Node<R> node = root;
+    while (node != null) {
+      if (node.left != null && compare(node.left.max, resource) > 0) {
+        node = node.left;
+      } else if (compare(node.resource, resource) > 0) {
+        next = node;
+        for (Node<R> last = node.left; last != null; last = last.right) {
+          previous = last;
+        }
+        break;
+      } else {
+        previous = node;
+        node = node.right;
+      }
+    }
+    long label;
+    if (next == null) {
+      if (previous == null) {
+        label = 0;
+      } else if (previous.label <= Long.MAX_VALUE - GAP) {
+        label = previous.label + GAP;
+      } else {
+        return relabeled(resource);
+      }
+    } else if (previous == null) {
+      if (next.label >= Long.MIN_VALUE + GAP) {
+        label = next.label - GAP;
+      } else {
+        return relabeled(resource);
+      }
+    } else {
+      // Unsigned, since the labels may be further apart than the largest long
+      long space = next.label - previous.label;
+      if (space == 1) {
+        return relabeled(resource);
+      }
+      label = previous.label + (space >>> 1);
+    }
+    return new TopologicalOrder<>(insert(root, label, resource), labels.plus(resource, label));
+  }
+
+  /**
+   * Adds a resource, as {@link #added(com.aoapps.web.resources.registry.Resource)},
+   * labeling all resources again.
+   */
+  private TopologicalOrder<R> relabeled(R resource) {
+    final int size = labels.size();
+    Object[] array = new Object[size + 1];
+    copy(root, array, 0);
+    int pos = size;
+    for (int i = 0; i < size; i++) {
+      @SuppressWarnings("unchecked")
+      R other = (R) array[i];
+      if (compare(other, resource) > 0) {
+        pos = i;
+        break;
+      }
+    }
+    System.arraycopy(array, pos, array, pos + 1, size - pos);
+    array[pos] = resource;
+    return new TopologicalOrder<>(array);
+  }
+
+  /**
+   * Removes a resource that frees no others.  The remaining order is unchanged.
+   *
+   * @return  the new order or {@code null} when the resource was not found
+   *          and a full sort is required
+   */
+  TopologicalOrder<R> removed(R resource) {
+    Long label = labels.get(resource);
+    if (label == null) {
+      return null;
+    }
+    return new TopologicalOrder<>(remove(root, label), labels.minus(resource));
+  }
+
+  /**
+   * Checks if adding an ordering constraint between two resources has no effect on this order.
+   * This is the case when the before resource is already before the after resource, since
+   * this order still satisfies all constraints and is first among fewer possible orders.
+   */
+  boolean isSatisfied(R before, R after) {
+    Long beforeLabel = labels.get(before);
+    if (beforeLabel == null) {
+      return false;
+    }
+    Long afterLabel = labels.get(after);
+    return afterLabel != null && beforeLabel < afterLabel;
+  }
+
+  /**
+   * Checks if removing an ordering constraint between two resources has no effect on this order.
+   * Without the constraint, the after resource becomes available once its remaining prerequisites
+   * are added.  This is the case when every resource from then through the before resource is
+   * first in natural ordering, since the after resource would still not have been chosen.
+   *
+   * @param  remaining  The remaining prerequisites of the after resource
+   */
+  boolean isUnconstrained(R before, R after, Collection<R> remaining) {
+    Long beforeLabel = labels.get(before);
+    Long afterLabel = labels.get(after);
+    if (beforeLabel == null || afterLabel == null || beforeLabel > afterLabel) {
+      return false;
+    }
+    long available = Long.MIN_VALUE;
+    for (R other : remaining) {
+      Long label = labels.get(other);
+      if (label != null && label >= available) {
+        available = label + 1;
+      }
+    }
+    return !anyNotBefore(root, available, beforeLabel, after);
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the round-trip of {@link CompactForm}, including the changes from a
+ * {@linkplain Registry#registerBaseline(java.lang.String) baseline}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class CompactFormTest {
+
+  private static final String BASELINE_ID = CompactFormTest.class.getName();
+
+  private static final int GROUPS = 10;
+
+  /**
+   * Creates styles with every combination of attributes, including an empty URI.
+   * Each has a distinct URI, since the natural ordering does not consider every attribute.
+   */
+  private static List<Style> newStyles(String prefix) {
+    List<Style> styles = new ArrayList<>();
+    styles.add(Style.of(""));
+    int i = 0;
+    for (String media : new String[] {null, "print", "screen and (min-width: 600px)"}) {
+      for (Style.Direction direction : new Style.Direction[] {null, Style.Direction.LTR, Style.Direction.RTL}) {
+        for (String crossorigin : new String[] {null, "anonymous", "use-credentials"}) {
+          for (boolean disabled : new boolean[] {false, true}) {
+            styles.add(Style.builder()
+                .uri(prefix + "/style-" + (i++) + ".css")
+                .media(media)
+                .direction(direction)
+                .crossorigin(crossorigin)
+                .disabled(disabled)
+                .build());
+          }
+        }
+      }
+    }
+    return styles;
+  }
+
+  /**
+   * Creates scripts with every combination of attributes, including an empty URI.
+   * Each has a distinct URI, since the natural ordering does not consider every attribute.
+   */
+  private static List<Script> newScripts(String prefix) {
+    List<Script> scripts = new ArrayList<>();
+    scripts.add(Script.of(""));
+    int i = 0;
+    for (Script.Position position : Script.Position.values()) {
+      for (boolean async : new boolean[] {false, true}) {
+        for (boolean defer : new boolean[] {false, true}) {
+          for (String crossorigin : new String[] {null, "anonymous"}) {
+            scripts.add(Script.builder()
+                .uri(prefix + "/script-" + (i++) + ".js")
+                .position(position)
+                .async(async)
+                .defer(defer)
+                .crossorigin(crossorigin)
+                .build());
+          }
+        }
+      }
+    }
+    return scripts;
+  }
+
+  private static Styles newStylesWithOrdering(String prefix) {
+    Styles styles = new Styles();
+    List<Style> list = newStyles(prefix);
+    styles.add(list);
+    // Constraints by URI, required and not, including the empty URI
+    styles.addOrdering(Style.of(prefix + "/style-30.css"), Style.of(prefix + "/style-0.css"));
+    styles.addOrdering(false, Style.of(prefix + "/style-6.css"), Style.of(""));
+    styles.addOrdering(false, Style.of(prefix + "/missing.css"), Style.of(prefix + "/style-2.css"));
+    styles.addOrdering(list.get(10), list.get(20), list.get(30));
+    return styles;
+  }
+
+  private static Scripts newScriptsWithOrdering(String prefix) {
+    Scripts scripts = new Scripts();
+    scripts.add(newScripts(prefix));
+    // Within the same position
+    scripts.addOrdering(Script.of(prefix + "/script-3.js"), Script.of(prefix + "/script-1.js"));
+    return scripts;
+  }
+
+  private static <R extends Resource<R> & Comparable<? super R>> void assertResources(
+      Resources<R> expected,
+      Resources<R> actual
+  ) {
+    assertEquals(expected.getSnapshot(), actual.getSnapshot());
+    assertEquals(new ArrayList<>(expected.getSorted()), new ArrayList<>(actual.getSorted()));
+    // Resources are interned on deserialization
+    for (R resource : actual.getSnapshot()) {
+      assertTrue(expected.getSnapshot().contains(resource));
+    }
+  }
+
+  private static void assertGroup(Group expected, Group actual) {
+    if (expected == null) {
+      assertNull(actual);
+    } else {
+      assertResources(expected.styles, actual.styles);
+      assertResources(expected.scripts, actual.scripts);
+    }
+  }
+
+  private static void assertRegistry(Registry expected, Registry actual) {
+    assertEquals(expected.getActivations(), actual.getActivations());
+    for (int i = 0; i < GROUPS + 2; i++) {
+      String name = "group-" + i;
+      assertGroup(expected.getGroup(name, false), actual.getGroup(name, false));
+    }
+  }
+
+  private static Registry newRegistry() {
+    Registry registry = new Registry();
+    for (int i = 0; i < GROUPS; i++) {
+      String name = "group-" + i;
+      Group group = registry.getGroup(name);
+      group.styles.add(newStylesWithOrdering("/" + name).getSnapshot());
+      group.styles.addOrdering(Style.of("/" + name + "/style-3.css"), Style.of("/" + name + "/style-1.css"));
+      group.scripts.add(newScripts("/" + name));
+      if (i % 3 == 0) {
+        registry.activate(name);
+      } else if (i % 3 == 1) {
+        registry.deactivate(name);
+      }
+    }
+    return registry;
+  }
+
+  @After
+  public void unregisterBaseline() {
+    Registry baseline = Registry.getBaseline(BASELINE_ID);
+    if (baseline != null) {
+      baseline.unregisterBaseline();
+    }
+  }
+
+  @Test
+  public void testStyles() throws IOException, ClassNotFoundException {
+    Styles styles = newStylesWithOrdering("");
+    Styles copy = SerializationTestUtil.roundTrip(styles);
+    assertResources(styles, copy);
+    // Styles are canonical after deserialization
+    assertSame(Style.of(""), copy.getSorted().stream().filter(style -> style.getUri() == null).findFirst().get());
+  }
+
+  @Test
+  public void testScripts() throws IOException, ClassNotFoundException {
+    Scripts scripts = newScriptsWithOrdering("");
+    assertResources(scripts, SerializationTestUtil.roundTrip(scripts));
+  }
+
+  @Test
+  public void testEmpty() throws IOException, ClassNotFoundException {
+    assertTrue(SerializationTestUtil.roundTrip(new Styles()).isEmpty());
+    assertTrue(SerializationTestUtil.roundTrip(new Scripts()).isEmpty());
+    assertTrue(SerializationTestUtil.roundTrip(new Registry()).isEmpty());
+  }
+
+  @Test
+  public void testGroup() throws IOException, ClassNotFoundException {
+    Group group = newRegistry().getGroup("group-1");
+    assertGroup(group, SerializationTestUtil.roundTrip(group));
+  }
+
+  @Test
+  public void testRegistry() throws IOException, ClassNotFoundException {
+    Registry registry = newRegistry();
+    assertRegistry(registry, SerializationTestUtil.roundTrip(registry));
+  }
+
+  /**
+   * Changes a copy of a baseline registry.
+   */
+  private static Registry change(Registry baseline) {
+    Registry registry = baseline.copy();
+    Group group = registry.getGroup("group-2");
+    group.styles.add(Style.of("/extra.css"));
+    group.styles.remove(Style.of("/group-2/style-0.css"));
+    group.styles.remove(Style.of(""));
+    group.styles.addOrdering(Style.of("/extra.css"), Style.of("/group-2/style-1.css"));
+    group.styles.removeOrdering(Style.of("/group-2/style-3.css"), Style.of("/group-2/style-1.css"));
+    group.scripts.add(Script.builder().uri("/extra.js").position(Script.Position.HEAD_END).defer(true).build());
+    registry.getGroup("group-" + GROUPS).scripts.add(Script.of("/new-group.js"));
+    registry.getGroup("group-" + (GROUPS + 1));
+    registry.activate("group-1").deactivate("group-0").setActivation(Group.Name.valueOf("group-3"), null);
+    return registry;
+  }
+
+  @Test
+  public void testBaselineDelta() throws IOException, ClassNotFoundException {
+    Registry baseline = newRegistry().registerBaseline(BASELINE_ID);
+    Registry unchanged = baseline.copy();
+    Registry copy = SerializationTestUtil.roundTrip(unchanged);
+    assertRegistry(baseline, copy);
+    Registry changed = change(baseline);
+    byte[] delta = SerializationTestUtil.serialize(changed);
+    Registry changedCopy = (Registry) SerializationTestUtil.deserialize(delta);
+    assertRegistry(changed, changedCopy);
+    // A copy of the deserialized registry is also written as its changes
+    assertRegistry(changed, SerializationTestUtil.roundTrip(changedCopy.copy()));
+    // Once unregistered, a copy is written in full
+    baseline.unregisterBaseline();
+    byte[] full = SerializationTestUtil.serialize(changed);
+    assertTrue(delta.length < full.length);
+    assertRegistry(changed, (Registry) SerializationTestUtil.deserialize(full));
+  }
+
+  @Test
+  public void testBaselineDeltaWithEquivalentBaseline() throws IOException, ClassNotFoundException {
+    Registry baseline = newRegistry().registerBaseline(BASELINE_ID);
+    Registry changed = change(baseline);
+    byte[] delta = SerializationTestUtil.serialize(changed);
+    baseline.unregisterBaseline();
+    // As in another JVM
+    newRegistry().registerBaseline(BASELINE_ID);
+    assertRegistry(changed, (Registry) SerializationTestUtil.deserialize(delta));
+  }
+
+  @Test
+  public void testBaselineMissing() throws IOException, ClassNotFoundException {
+    Registry baseline = newRegistry().registerBaseline(BASELINE_ID);
+    byte[] delta = SerializationTestUtil.serialize(change(baseline));
+    baseline.unregisterBaseline();
+    try {
+      SerializationTestUtil.deserialize(delta);
+      fail("Missing baseline not reported");
+    } catch (InvalidObjectException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testBaselineMismatch() throws IOException, ClassNotFoundException {
+    Registry baseline = newRegistry().registerBaseline(BASELINE_ID);
+    byte[] delta = SerializationTestUtil.serialize(change(baseline));
+    baseline.unregisterBaseline();
+    Registry other = newRegistry();
+    other.getGroup("group-5").styles.add(Style.of("/other.css"));
+    other.registerBaseline(BASELINE_ID);
+    try {
+      SerializationTestUtil.deserialize(delta);
+      fail("Different baseline not reported");
+    } catch (InvalidObjectException e) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import org.junit.Test;
+
+/**
+ * Tests {@link PersistentHashMap} against {@link HashMap}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class PersistentHashMapTest {
+
+  /**
+   * A key with a chosen hash code, so keys may collide or share any number of hash bits.
+   */
+  private static final class Key {
+
+    private final int id;
+    private final int hash;
+
+    private Key(int id, int hash) {
+      this.id = id;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof Key) && ((Key) obj).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Key" + id + "#" + Integer.toHexString(hash);
+    }
+  }
+
+  /**
+   * Concatenates different values.  Equal values are returned as-is, as required by
+   * {@link PersistentHashMap#plusAll(com.aoapps.web.resources.registry.PersistentHashMap, java.util.function.BinaryOperator)}.
+   */
+  private static final BinaryOperator<String> concat = (value1, value2) -> value1.equals(value2) ? value1 : (value1 + value2);
+
+  private static final int ITERATIONS = 200;
+
+  /**
+   * Creates keys where, depending on the iteration, hash codes are random, drawn from
+   * a few values so that many collide, or differ only above the bits of the first levels.
+   */
+  private static Key[] newKeys(Random random, int count) {
+    int kind = random.nextInt(3);
+    int hashes = 1 + random.nextInt(8);
+    Key[] keys = new Key[count];
+    for (int i = 0; i < count; i++) {
+      int hash;
+      switch (kind) {
+        case 0:
+          hash = random.nextInt();
+          break;
+        case 1:
+          hash = random.nextInt(hashes);
+          break;
+        default:
+          hash = random.nextInt(64) << 10;
+      }
+      keys[i] = new Key(i, hash);
+    }
+    return keys;
+  }
+
+  private static <K, V> void assertMap(Map<K, V> expected, PersistentHashMap<K, V> actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    assertEquals(expected, actual);
+    assertEquals(actual, expected);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    for (Map.Entry<K, V> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), actual.get(entry.getKey()));
+      assertTrue(actual.containsKey(entry.getKey()));
+    }
+    Set<K> keys = new HashSet<>();
+    for (Iterator<K> iter = actual.keyIterator(); iter.hasNext(); ) {
+      assertTrue("Duplicate key", keys.add(iter.next()));
+    }
+    assertEquals(expected.keySet(), keys);
+  }
+
+  /**
+   * Creates a random map, along with the same map as a {@link HashMap}.
+   */
+  private static PersistentHashMap<Key, String> newMap(Random random, Key[] keys, Map<Key, String> expected) {
+    PersistentHashMap<Key, String> map = PersistentHashMap.empty();
+    for (int i = random.nextInt(keys.length * 2); i > 0; i--) {
+      Key key = keys[random.nextInt(keys.length)];
+      String value = Character.toString((char) ('a' + random.nextInt(4)));
+      map = map.plus(key, value);
+      expected.put(key, value);
+    }
+    return map;
+  }
+
+  @Test
+  public void testEmpty() {
+    PersistentHashMap<Key, String> empty = PersistentHashMap.empty();
+    assertMap(new HashMap<>(), empty);
+    assertNull(empty.get(new Key(1, 1)));
+    assertNull(empty.get(null));
+    assertSame(empty, empty.minus(new Key(1, 1)));
+    assertSame(empty, empty.minus(null));
+  }
+
+  @Test
+  public void testPlusAndMinus() {
+    Random random = new Random(1);
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      Key[] keys = newKeys(random, 1 + random.nextInt(200));
+      PersistentHashMap<Key, String> map = PersistentHashMap.empty();
+      Map<Key, String> expected = new HashMap<>();
+      for (int i = 0; i < 300; i++) {
+        Key key = keys[random.nextInt(keys.length)];
+        if (random.nextInt(3) == 0) {
+          PersistentHashMap<Key, String> newMap = map.minus(key);
+          if (expected.remove(key) == null) {
+            assertSame(map, newMap);
+          }
+          map = newMap;
+        } else {
+          String value = Integer.toString(random.nextInt(4));
+          map = map.plus(key, value);
+          expected.put(key, value);
+        }
+        assertMap(expected, map);
+      }
+    }
+  }
+
+  @Test
+  public void testPlusSameValueUnchanged() {
+    Key key = new Key(1, 1);
+    String value = "value";
+    PersistentHashMap<Key, String> map = PersistentHashMap.<Key, String>empty().plus(key, value);
+    assertSame(map, map.plus(key, value));
+    assertSame(map, map.plus(new Key(1, 1), value));
+  }
+
+  @Test
+  public void testCollisions() {
+    PersistentHashMap<Key, String> map = PersistentHashMap.empty();
+    Map<Key, String> expected = new HashMap<>();
+    Key[] keys = new Key[10];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new Key(i, 42);
+      map = map.plus(keys[i], "v" + i);
+      expected.put(keys[i], "v" + i);
+      assertMap(expected, map);
+    }
+    // A key with another hash nests the collision below a new node
+    Key other = new Key(100, 42 + (1 << 5));
+    map = map.plus(other, "other");
+    expected.put(other, "other");
+    assertMap(expected, map);
+    map = map.plus(keys[3], "replaced");
+    expected.put(keys[3], "replaced");
+    assertMap(expected, map);
+    assertSame(map, map.minus(new Key(200, 42)));
+    for (Key key : keys) {
+      map = map.minus(key);
+      expected.remove(key);
+      assertMap(expected, map);
+    }
+    map = map.minus(other);
+    assertSame(PersistentHashMap.empty(), map);
+  }
+
+  /**
+   * Removing keys collapses nodes left with a single pair into their parents, while
+   * all remaining pairs stay reachable.
+   */
+  @Test
+  public void testRemovalCollapse() {
+    Random random = new Random(2);
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      Key[] keys = newKeys(random, 2 + random.nextInt(100));
+      PersistentHashMap<Key, String> map = PersistentHashMap.empty();
+      Map<Key, String> expected = new HashMap<>();
+      for (Key key : keys) {
+        map = map.plus(key, key.toString());
+        expected.put(key, key.toString());
+      }
+      assertMap(expected, map);
+      // Remove in random order, down to empty
+      Key[] order = keys.clone();
+      for (int i = order.length - 1; i > 0; i--) {
+        int j = random.nextInt(i + 1);
+        Key swap = order[i];
+        order[i] = order[j];
+        order[j] = swap;
+      }
+      for (Key key : order) {
+        map = map.minus(key);
+        expected.remove(key);
+        assertMap(expected, map);
+        assertFalse(map.containsKey(key));
+      }
+      assertSame(PersistentHashMap.empty(), map);
+    }
+  }
+
+  @Test
+  public void testPlusAll() {
+    Random random = new Random(3);
+    for (int iteration = 0; iteration < ITERATIONS * 5; iteration++) {
+      Key[] keys = newKeys(random, 1 + random.nextInt(200));
+      Map<Key, String> expected1 = new HashMap<>();
+      PersistentHashMap<Key, String> map1 = newMap(random, keys, expected1);
+      Map<Key, String> expected2 = new HashMap<>();
+      PersistentHashMap<Key, String> map2;
+      if (random.nextBoolean()) {
+        map2 = newMap(random, keys, expected2);
+      } else {
+        // Derived from the first map, sharing most of its nodes
+        map2 = map1;
+        expected2.putAll(expected1);
+        for (int i = random.nextInt(20); i > 0; i--) {
+          Key key = keys[random.nextInt(keys.length)];
+          if (random.nextBoolean()) {
+            map2 = map2.minus(key);
+            expected2.remove(key);
+          } else {
+            String value = Character.toString((char) ('a' + random.nextInt(4)));
+            map2 = map2.plus(key, value);
+            expected2.put(key, value);
+          }
+        }
+      }
+      assertPlusAll(expected1, map1, expected2, map2);
+      assertPlusAll(expected2, map2, expected1, map1);
+    }
+  }
+
+  private static void assertPlusAll(
+      Map<Key, String> expected1,
+      PersistentHashMap<Key, String> map1,
+      Map<Key, String> expected2,
+      PersistentHashMap<Key, String> map2
+  ) {
+    Map<Key, String> expected = new HashMap<>(expected1);
+    for (Map.Entry<Key, String> entry : expected2.entrySet()) {
+      expected.merge(entry.getKey(), entry.getValue(), concat);
+    }
+    PersistentHashMap<Key, String> merged = map1.plusAll(map2, concat);
+    assertMap(expected, merged);
+    if (expected.equals(expected1)) {
+      assertSame(map1, merged);
+    }
+  }
+
+  /**
+   * The merger is always given the value of the map being added to first.
+   */
+  @Test
+  public void testPlusAllMergerOrder() {
+    Key top = new Key(1, 1);
+    Key nested = new Key(2, 2 << 5);
+    Key collision1 = new Key(3, 3);
+    Key collision2 = new Key(4, 3);
+    PersistentHashMap<Key, String> map1 = PersistentHashMap.<Key, String>empty()
+        .plus(top, "a")
+        .plus(nested, "a")
+        .plus(new Key(5, 2), "a")
+        .plus(collision1, "a")
+        .plus(collision2, "a");
+    PersistentHashMap<Key, String> map2 = PersistentHashMap.<Key, String>empty()
+        .plus(top, "b")
+        .plus(nested, "b")
+        .plus(collision2, "b");
+    PersistentHashMap<Key, String> merged = map1.plusAll(map2, concat);
+    assertEquals("ab", merged.get(top));
+    assertEquals("ab", merged.get(nested));
+    assertEquals("a", merged.get(collision1));
+    assertEquals("ab", merged.get(collision2));
+    assertEquals(5, merged.size());
+    merged = map2.plusAll(map1, concat);
+    assertEquals("ba", merged.get(top));
+    assertEquals("ba", merged.get(nested));
+    assertEquals("a", merged.get(collision1));
+    assertEquals("ba", merged.get(collision2));
+    assertEquals(5, merged.size());
+  }
+
+  @Test
+  public void testPlusAllUnchanged() {
+    Random random = new Random(4);
+    Key[] keys = newKeys(random, 100);
+    PersistentHashMap<Key, String> map = newMap(random, keys, new HashMap<>());
+    PersistentHashMap<Key, String> empty = PersistentHashMap.empty();
+    assertSame(map, map.plusAll(map, concat));
+    assertSame(map, map.plusAll(empty, concat));
+    assertSame(map, empty.plusAll(map, concat));
+    PersistentHashMap<Key, String> subset = map;
+    for (int i = 0; i < 50; i++) {
+      subset = subset.minus(keys[i]);
+    }
+    assertSame(map, map.plusAll(subset, concat));
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * ao-web-resources-registry - Central registry for web resource management.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-web-resources-registry.
+ *
+ * ao-web-resources-registry is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-web-resources-registry is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-web-resources-registry.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.web.resources.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests {@link TopologicalOrder}, including that the order maintained in-place by
+ * {@link Resources} is always the same as a full sort.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class TopologicalOrderTest {
+
+  private static final int ITERATIONS = 300;
+
+  /**
+   * Creates styles in natural ordering, where some share a URI with different media.
+   */
+  private static List<Style> newStyles(int count) {
+    List<Style> styles = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      styles.add(Style.builder().uri(String.format("/style-%03d.css", i / 2)).media(i % 2 == 0 ? null : "print").build());
+    }
+    Collections.sort(styles);
+    return styles;
+  }
+
+  /**
+   * Performs a full sort without any ordering constraints.
+   */
+  private static TopologicalOrder<Style> sort(Collection<Style> styles) {
+    Map<Object, List<Style>> byUri = new HashMap<>();
+    for (Style style : styles) {
+      byUri.computeIfAbsent(Resources.uriKey(style), k -> new ArrayList<>()).add(style);
+    }
+    return TopologicalOrder.sort(
+        styles,
+        Collections.<Style, Set<Resources.Before<Style>>>emptyMap(),
+        byUri,
+        (before, after) -> {
+          // All allowed
+        }
+    );
+  }
+
+  /**
+   * Gets the sort, or {@code null} when the sort fails.
+   */
+  private static List<Style> getSorted(Resources<Style> styles) {
+    try {
+      return new ArrayList<>(styles.getSorted());
+    } catch (IllegalStateException e) {
+      return null;
+    }
+  }
+
+  @Test
+  public void testNaturalOrderWithoutConstraints() {
+    List<Style> styles = newStyles(50);
+    List<Style> shuffled = new ArrayList<>(styles);
+    Collections.shuffle(shuffled, new Random(1));
+    assertEquals(styles, new ArrayList<>(sort(shuffled).getSorted()));
+  }
+
+  @Test
+  public void testAddedEqualsSort() {
+    Random random = new Random(2);
+    List<Style> styles = newStyles(100);
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      List<Style> present = new ArrayList<>();
+      TopologicalOrder<Style> order = sort(present);
+      for (int i = 0; i < 50; i++) {
+        Style style = styles.get(random.nextInt(styles.size()));
+        if (!present.contains(style)) {
+          present.add(style);
+          order = order.added(style);
+          assertEquals(new ArrayList<>(sort(present).getSorted()), new ArrayList<>(order.getSorted()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Adding many resources between the same two resources runs out of labels between them.
+   */
+  @Test
+  public void testAddedBetweenSameResources() {
+    List<Style> styles = newStyles(200);
+    List<Style> present = new ArrayList<>();
+    present.add(styles.get(0));
+    present.add(styles.get(styles.size() - 1));
+    TopologicalOrder<Style> order = sort(present);
+    for (int i = styles.size() - 2; i > 0; i--) {
+      order = order.added(styles.get(i));
+    }
+    assertEquals(styles, new ArrayList<>(order.getSorted()));
+  }
+
+  @Test
+  public void testRemovedEqualsSort() {
+    Random random = new Random(3);
+    List<Style> styles = newStyles(100);
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      List<Style> present = new ArrayList<>(styles.subList(0, random.nextInt(styles.size())));
+      TopologicalOrder<Style> order = sort(present);
+      while (!present.isEmpty()) {
+        Style style = present.remove(random.nextInt(present.size()));
+        order = order.removed(style);
+        assertEquals(new ArrayList<>(sort(present).getSorted()), new ArrayList<>(order.getSorted()));
+        assertNull(order.removed(style));
+      }
+    }
+  }
+
+  @Test
+  public void testIsSatisfied() {
+    List<Style> styles = newStyles(10);
+    TopologicalOrder<Style> order = sort(styles.subList(0, 9));
+    assertTrue(order.isSatisfied(styles.get(1), styles.get(2)));
+    assertFalse(order.isSatisfied(styles.get(2), styles.get(1)));
+    assertFalse(order.isSatisfied(styles.get(1), styles.get(9)));
+    assertFalse(order.isSatisfied(styles.get(9), styles.get(1)));
+  }
+
+  /**
+   * Applies random changes to styles, both one at a time and in batches, comparing the
+   * sort maintained in-place with a full sort after each change.
+   */
+  @Test
+  public void testIncrementalEqualsSort() throws IOException, ClassNotFoundException {
+    Random random = new Random(4);
+    List<Style> styles = newStyles(30);
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      Styles resources = new Styles();
+      for (int i = 0; i < 60; i++) {
+        if (random.nextInt(5) == 0) {
+          int changes = 1 + random.nextInt(10);
+          resources.batch(mutator -> {
+            for (int j = 0; j < changes; j++) {
+              change(random, styles, mutator);
+            }
+          });
+        } else {
+          change(random, styles, new Resources.Mutator<Style>() {
+            @Override
+            public boolean add(Style resource) {
+              return resources.add(resource);
+            }
+
+            @Override
+            public boolean remove(Style resource) {
+              return resources.remove(resource);
+            }
+
+            @Override
+            public boolean addOrdering(boolean required, Style before, Style after) {
+              return resources.addOrdering(required, before, after);
+            }
+
+            @Override
+            public boolean removeOrdering(boolean required, Style before, Style after) {
+              return resources.removeOrdering(required, before, after);
+            }
+          });
+        }
+        List<Style> sorted = getSorted(resources);
+        List<Style> expected = getSorted(SerializationTestUtil.roundTrip(resources));
+        assertEquals(expected, sorted);
+      }
+    }
+  }
+
+  private static void change(Random random, List<Style> styles, Resources.Mutator<Style> mutator) {
+    Style style1 = styles.get(random.nextInt(styles.size()));
+    Style style2 = styles.get(random.nextInt(styles.size()));
+    int change = random.nextInt(10);
+    if (change < 4) {
+      mutator.add(style1);
+    } else if (change < 6) {
+      mutator.remove(style1);
+    } else if (change < 8) {
+      if (!style1.getUri().equals(style2.getUri())) {
+        mutator.addOrdering(random.nextInt(10) == 0, style1, style2);
+      }
+    } else {
+      mutator.removeOrdering(false, style1, style2);
+    }
+  }
+
+  /**
+   * Asserts the sort reports a cycle.
+   *
+   * @return  the description of the cycle
+   */
+  private static String assertCycle(Resources<Style> resources) {
+    try {
+      resources.getSorted();
+    } catch (IllegalStateException e) {
+      String message = e.getMessage();
+      assertTrue(message, message.startsWith("Cycle detected:"));
+      return message;
+    }
+    fail("Cycle not reported");
+    throw new AssertionError();
+  }
+
+  @Test
+  public void testCycleReported() {
+    Style a = Style.of("/a.css");
+    Style b = Style.of("/b.css");
+    Style c = Style.of("/c.css");
+    Styles styles = new Styles();
+    styles.add(a, b, c);
+    styles.addOrdering(c, b);
+    styles.addOrdering(b, a);
+    assertEquals(Arrays.asList(c, b, a), new ArrayList<>(styles.getSorted()));
+    styles.addOrdering(a, c);
+    String message = assertCycle(styles);
+    for (Style style : new Style[] {a, b, c}) {
+      assertTrue(message, message.contains(style.toString()));
+    }
+    // Breaking the cycle
+    styles.removeOrdering(a, c);
+    assertEquals(Arrays.asList(c, b, a), new ArrayList<>(styles.getSorted()));
+  }
+
+  /**
+   * A cycle through constraints declared before the resources are added is reported once
+   * the last resource of the cycle is added.
+   */
+  @Test
+  public void testCycleReportedWhenResourceAdded() {
+    Style a = Style.of("/a.css");
+    Style b = Style.of("/b.css");
+    Styles styles = new Styles();
+    styles.add(a);
+    styles.addOrdering(false, a, b);
+    styles.addOrdering(false, b, a);
+    assertEquals(Collections.singletonList(a), new ArrayList<>(styles.getSorted()));
+    styles.add(b);
+    assertCycle(styles);
+    styles.remove(b);
+    assertEquals(Collections.singletonList(a), new ArrayList<>(styles.getSorted()));
+  }
+
+  /**
+   * A constraint declared by URI alone orders the resources with any attributes, so a
+   * cycle may be through resources that differ from the declared constraints.
+   */
+  @Test
+  public void testCycleReportedByUri() {
+    Style a = Style.of("/a.css");
+    Style b = Style.of("/b.css");
+    Style printB = Style.builder().uri("/b.css").media("print").build();
+    Styles styles = new Styles();
+    styles.add(a, printB);
+    styles.addOrdering(a, b);
+    styles.addOrdering(printB, a);
+    assertCycle(styles);
+  }
+}